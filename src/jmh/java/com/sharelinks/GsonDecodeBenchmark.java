@@ -0,0 +1,46 @@
+package com.sharelinks;
+
+import com.google.gson.Gson;
+import com.sharelinks.models.spotify.SpotifyAccessToken;
+import com.sharelinks.models.spotify.SpotifyTrack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the Spotify Web API payloads, as done on the resolver threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GsonDecodeBenchmark {
+    private static final String TRACK_JSON = "{"
+            + "\"album\":{\"album_type\":\"album\",\"images\":["
+            + "{\"height\":640,\"url\":\"https://i.scdn.co/image/ab67616d0000b273baf89eb11ec7c657805d2da0\",\"width\":640},"
+            + "{\"height\":300,\"url\":\"https://i.scdn.co/image/ab67616d00001e02baf89eb11ec7c657805d2da0\",\"width\":300},"
+            + "{\"height\":64,\"url\":\"https://i.scdn.co/image/ab67616d00004851baf89eb11ec7c657805d2da0\",\"width\":64}],"
+            + "\"name\":\"Whenever You Need Somebody\",\"release_date\":\"1987-11-12\",\"total_tracks\":10},"
+            + "\"artists\":[{\"external_urls\":{\"spotify\":\"https://open.spotify.com/artist/0gxyHStUsqpMadRV0Di1Qt\"},"
+            + "\"id\":\"0gxyHStUsqpMadRV0Di1Qt\",\"name\":\"Rick Astley\",\"type\":\"artist\"}],"
+            + "\"disc_number\":1,\"duration_ms\":213573,\"explicit\":false,"
+            + "\"external_urls\":{\"spotify\":\"https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC\"},"
+            + "\"id\":\"4uLU6hMCjMI75M1A2tKUQC\",\"name\":\"Never Gonna Give You Up\",\"popularity\":79,"
+            + "\"track_number\":1,\"type\":\"track\",\"uri\":\"spotify:track:4uLU6hMCjMI75M1A2tKUQC\"}";
+
+    private static final String TOKEN_JSON = "{"
+            + "\"access_token\":\"BQDlDbCJyLQ5n2K0s2qPVv2XCj0xJrJzTzW3cNnG8tq1mD6Q0PlnhL9Wc4G6lWvT1zZxM0aN3pQ7rS8tU9vW0xY1zA2bC3dE4fG5hI6jK7lM8nO9pQ\","
+            + "\"token_type\":\"Bearer\",\"expires_in\":3600,\"scope\":\"\","
+            + "\"refresh_token\":\"AQCx2wNq0P0o3xZv9yX8wV7uT6sR5qP4oN3mL2kJ1iH0gF9eD8cB7aZ6yX5wV4uT3sR2qP1oN0mL9kJ8iH7gF6eD5cB4aZ3yX2wV1uT0s\"}";
+
+    private final Gson gson = new Gson();
+
+    @Benchmark
+    public SpotifyTrack decodeTrack() {
+        return gson.fromJson(TRACK_JSON, SpotifyTrack.class);
+    }
+
+    @Benchmark
+    public SpotifyAccessToken decodeAccessToken() {
+        return gson.fromJson(TOKEN_JSON, SpotifyAccessToken.class);
+    }
+}
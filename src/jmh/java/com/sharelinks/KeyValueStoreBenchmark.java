@@ -0,0 +1,81 @@
+package com.sharelinks;
+
+import com.sharelinks.models.spotify.SpotifyAccessToken;
+import com.sharelinks.utilities.KeyValueStore;
+import com.sharelinks.utilities.SpotifyTokenManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistence cost of a Spotify access token, which replaced DiskUtility's ObjectOutputStream/ObjectInputStream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeyValueStoreBenchmark {
+    private static final String TOKEN_KEY = ".spotify_token";
+
+    private File directory;
+    private KeyValueStore store;
+    private SpotifyAccessToken token;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("share-links-jmh").toFile();
+        store = new KeyValueStore(directory);
+        store.Start();
+
+        token = new SpotifyAccessToken();
+        token.access_token = "BQDlDbCJyLQ5n2K0s2qPVv2XCj0xJrJzTzW3cNnG8tq1mD6Q0PlnhL9Wc4G6lWvT1zZxM0aN3pQ7rS8tU9vW0xY1zA2bC3dE4fG5hI6jK7lM8nO9pQ";
+        token.token_type = "Bearer";
+        token.expires_in = 3600;
+        token.scope = "";
+        token.refresh_token = "AQCx2wNq0P0o3xZv9yX8wV7uT6sR5qP4oN3mL2kJ1iH0gF9eD8cB7aZ6yX5wV4uT3sR2qP1oN0mL9kJ8iH7gF6eD5cB4aZ3yX2wV1uT0s";
+        token.creation_time = LocalDateTime.now();
+
+        store.Put(TOKEN_KEY, token, SpotifyTokenManager.TOKEN_CODEC);
+        store.Flush();
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.Shutdown();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Encode, write to a temp file, sync and rename.
+     */
+    @Benchmark
+    public void write() {
+        store.Put(TOKEN_KEY, token, SpotifyTokenManager.TOKEN_CODEC);
+        store.Flush();
+    }
+
+    /**
+     * First read of a key, from disk.
+     */
+    @Benchmark
+    public SpotifyAccessToken readCold() {
+        return new KeyValueStore(directory).Get(TOKEN_KEY, SpotifyTokenManager.TOKEN_CODEC);
+    }
+
+    /**
+     * Any later read of a key, from memory.
+     */
+    @Benchmark
+    public SpotifyAccessToken readWarm() {
+        return store.Get(TOKEN_KEY, SpotifyTokenManager.TOKEN_CODEC);
+    }
+}
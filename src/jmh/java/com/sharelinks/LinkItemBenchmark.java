@@ -0,0 +1,23 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LinkItemBenchmark {
+    private final String title = "Never Gonna Give You Up";
+    private final String content = "Rick Astley";
+    private final String url = "https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC";
+    private final String imageUrl = "https://i.scdn.co/image/ab67616d00004851baf89eb11ec7c657805d2da0";
+
+    @Benchmark
+    public LinkItem construct() {
+        return new LinkItem(LinkItemType.SPOTIFY_LINK, title, content, url, imageUrl, LocalDateTime.now(), "Zezima", "SPOTIFY_TRACK:4uLU6hMCjMI75M1A2tKUQC", false);
+    }
+}
@@ -0,0 +1,57 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkMatch;
+import com.sharelinks.utilities.LinkRecognizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the single-pass {@link LinkRecognizer} against the regex path that onChatMessage() used before it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LinkRecognizerBenchmark {
+    private static final String SHARE_STRING = "!Share";
+
+    // The path onChatMessage() used before LinkRecognizer, kept here as the baseline
+    private static final Pattern SPOTIFY_TRACK_PATTERN = Pattern.compile(
+            "^(https://open.spotify.com/track/|spotify:track:)(\\w*)\\?*.*", Pattern.CASE_INSENSITIVE);
+
+    @Param({
+            "Anyone want to trade a dragon scimitar?",
+            "!Share https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC?si=1234567890abcdef",
+            "!Share spotify:track:4uLU6hMCjMI75M1A2tKUQC",
+            "!Share https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "!Share https://example.com/not-a-supported-link"
+    })
+    public String message;
+
+    private final LinkRecognizer linkRecognizer = new LinkRecognizer();
+    private final LinkMatch linkMatch = new LinkMatch();
+
+    @Benchmark
+    public void recognizer(Blackhole blackhole) {
+        if (linkRecognizer.Recognize(message, linkMatch)) {
+            blackhole.consume(linkMatch.getIdStart());
+            blackhole.consume(linkMatch.getIdEnd());
+        }
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        String trimmed = message.trim();
+        if (trimmed.toLowerCase().startsWith(SHARE_STRING.toLowerCase())) {
+            String link = trimmed.substring(SHARE_STRING.length()).trim();
+
+            Matcher matcher = SPOTIFY_TRACK_PATTERN.matcher(link);
+            if (matcher.find()) {
+                blackhole.consume(matcher.group(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import com.sharelinks.utilities.AlbumArtLoader;
+import com.sharelinks.utilities.ImageCache;
+import com.sharelinks.utilities.ShareLinksMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding a batch of shared links to a panel that already holds many items, as one update tick applies them.
+ * The panel is filled to capacity, so every insert also evicts the oldest item, which is the steady state of a long
+ * session.
+ * Runs headless and off the EDT, so it measures model and layout bookkeeping, not painting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShareLinksPanelBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int existingItems;
+
+    @Param({"1", "20"})
+    public int batchSize;
+
+    private ShareLinksPanel panel;
+    // One more distinct item than the panel holds, so the item added next has always been evicted already
+    private LinkItem[] items;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ShareLinksConfig config = new ShareLinksConfig() {
+            @Override
+            public int maxLinkItems() {
+                return existingItems;
+            }
+        };
+
+        ShareLinksMetrics metrics = new ShareLinksMetrics();
+        ImageCache imageCache = new ImageCache();
+        panel = new ShareLinksPanel(config, metrics, imageCache, new AlbumArtLoader(imageCache, metrics));
+        items = new LinkItem[existingItems + 1];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new LinkItem(LinkItemType.SPOTIFY_LINK, "Never Gonna Give You Up", "Rick Astley",
+                    "https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC", null, LocalDateTime.now(), "Zezima",
+                    "SPOTIFY_TRACK:" + i, false);
+        }
+        for (int i = 0; i < existingItems; i++) {
+            addNextItem();
+        }
+        panel.flushUpdates();
+    }
+
+    @Benchmark
+    public void addItemsToPanel() {
+        for (int i = 0; i < batchSize; i++) {
+            addNextItem();
+        }
+        panel.flushUpdates();
+    }
+
+    private void addNextItem() {
+        panel.addItemToPanel(items[next]);
+        next = (next + 1) % items.length;
+    }
+}
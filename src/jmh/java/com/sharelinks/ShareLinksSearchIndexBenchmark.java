@@ -0,0 +1,71 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of searching the panel's history, which must stay well within a 16 ms frame, and of keeping the index up to
+ * date as items are added and evicted. Titles, artists and senders are drawn from small vocabularies so that common
+ * prefixes match many items, like real chat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShareLinksSearchIndexBenchmark {
+    private static final String[] WORDS = {"never", "gonna", "give", "you", "up", "let", "down", "run", "around",
+            "desert", "blue", "monday", "take", "on", "me", "africa", "dancing", "queen", "bohemian", "rhapsody",
+            "sea", "shanty", "harmony", "lumbridge", "varrock", "falador", "wilderness", "scape", "main", "theme"};
+    private static final String[] ARTISTS = {"Rick Astley", "Toto", "a-ha", "ABBA", "Queen", "New Order", "Jagex",
+            "Ian Taylor", "Daft Punk", "Eurythmics"};
+    private static final String[] SENDERS = {"Zezima", "Lynx Titan", "B0aty", "Woox", "Settled", "Framed", "Sick Nerd",
+            "Alkan", "Mmorpg", "Durial321"};
+
+    @Param({"50000"})
+    public int indexedItems;
+
+    @Param({"r", "rick", "rick ast", "spotify queen", "nomatch"})
+    public String query;
+
+    private ShareLinksSearchIndex index;
+    // One more distinct item than the index holds, so the item added next has always been removed already
+    private LinkItem[] items;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        items = new LinkItem[indexedItems + 1];
+        for (int i = 0; i < items.length; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            LinkItemType type = random.nextBoolean() ? LinkItemType.SPOTIFY_LINK : LinkItemType.YOUTUBE_LINK;
+            items[i] = new LinkItem(type, title, ARTISTS[random.nextInt(ARTISTS.length)],
+                    "https://open.spotify.com/track/" + i, null, LocalDateTime.now(), SENDERS[random.nextInt(SENDERS.length)],
+                    "SPOTIFY_TRACK:" + i, false);
+        }
+
+        index = new ShareLinksSearchIndex();
+        for (int i = 0; i < indexedItems; i++) {
+            index.addNewest(items[i]);
+        }
+        next = indexedItems;
+    }
+
+    @Benchmark
+    public List<LinkItem> search() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public void addAndEvict() {
+        int evicted = (next + 1) % items.length;
+        index.remove(items[evicted]);
+        index.addNewest(items[next]);
+        next = evicted;
+    }
+}
@@ -0,0 +1,198 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkKind;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.util.ImageUtil;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.MatteBorder;
+import java.awt.*;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Single reusable renderer for link rows. Only the rows that are visible in the list are ever painted.
+ */
+class ShareLinksCellRenderer implements ListCellRenderer<LinkItem> {
+    // Layout of an item:
+    // |--------------------------|
+    // ||----| TYPE          TIME |
+    // ||ICON|       TITLE        |
+    // ||----|      CONTENT       |
+    // |--------------------------|
+
+    static final int ITEM_HEIGHT = 56;
+    static final int ITEM_GAP = 4;
+
+    private static final ImageIcon DEFAULT_SPOTIFY_ICON;
+    private static final ImageIcon DEFAULT_YOUTUBE_ICON;
+
+    private static final Color DEFAULT_BACKGROUND = new Color(11, 30, 41);
+    private static final Color SPOTIFY_BACKGROUND = new Color(15, 15, 15);
+    private static final Color YOUTUBE_BACKGROUND = new Color(33, 15, 15);
+    private static final Color DEFAULT_HOVER_BACKGROUND = DEFAULT_BACKGROUND.brighter().brighter();
+    private static final Color SPOTIFY_HOVER_BACKGROUND = SPOTIFY_BACKGROUND.brighter().brighter();
+    private static final Color YOUTUBE_HOVER_BACKGROUND = YOUTUBE_BACKGROUND.brighter().brighter();
+
+    private static final int CONTENT_WIDTH = 148;
+    private static final int TIME_WIDTH = 20;
+
+    static {
+        DEFAULT_SPOTIFY_ICON = new ImageIcon(ImageUtil.getResourceStreamFromClass(ShareLinksCellRenderer.class, "default-spotify.png"));
+        DEFAULT_YOUTUBE_ICON = new ImageIcon(ImageUtil.getResourceStreamFromClass(ShareLinksCellRenderer.class, "default-youtube.png"));
+    }
+
+    private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm");
+
+    private final JPanel fullPanel = new JPanel(new BorderLayout());
+    private final JLabel icon = new JLabel();
+    private final JLabel typeLabel = new JLabel();
+    private final JLabel timeLabel = new JLabel();
+    private final JLabel titleLabel = new JLabel("", SwingConstants.CENTER);
+    private final JLabel contentLabel = new JLabel("", SwingConstants.CENTER);
+
+    private int hoveredIndex = -1;
+    private int pressedIndex = -1;
+    // Share count by link key, or null if every row is a single share
+    private ToIntFunction<String> shareCounts;
+    // Loaded album art by image URL, or null while it is not loaded
+    private Function<String, ImageIcon> loadedArt = imageUrl -> null;
+    // Key of the album or playlist whose tracks are shown, or null
+    private String expandedKey;
+
+    ShareLinksCellRenderer() {
+        // Leave a gap below each row in the list's background color
+        fullPanel.setBorder(new MatteBorder(0, 0, ITEM_GAP, 0, ColorScheme.DARK_GRAY_COLOR));
+
+        // Define icon
+        icon.setPreferredSize(new Dimension(64, 64));
+        icon.setBorder(new EmptyBorder(0, 0, 0, 0));
+
+        // Define panel to contain header and body
+        JPanel headerAndBody = new JPanel();
+        headerAndBody.setLayout(new BoxLayout(headerAndBody, BoxLayout.Y_AXIS));
+        headerAndBody.setBorder(new EmptyBorder(4, 8, 4, 4));
+        headerAndBody.setOpaque(false);
+
+        // Define header, which contains item type and timestamp
+        JPanel header = new JPanel();
+        header.setLayout(new BorderLayout());
+        header.setOpaque(false);
+
+        Color darkerForeground = UIManager.getColor("Label.foreground").darker();
+
+        // Define item type
+        typeLabel.setFont(FontManager.getRunescapeFont());
+        typeLabel.setForeground(darkerForeground);
+        typeLabel.setPreferredSize(new Dimension(CONTENT_WIDTH - TIME_WIDTH, 0));
+
+        // Define timestamp
+        timeLabel.setFont(FontManager.getRunescapeFont());
+        timeLabel.setForeground(darkerForeground);
+
+        header.add(typeLabel, BorderLayout.WEST);
+        header.add(timeLabel, BorderLayout.EAST);
+
+        // Define body, which contains item title and content
+        JPanel body = new JPanel(new BorderLayout());
+        body.setOpaque(false);
+
+        // Define title
+        titleLabel.setBorder(new EmptyBorder(2, 0, 0, 0));
+        titleLabel.setFont(FontManager.getRunescapeBoldFont());
+        titleLabel.setForeground(darkerForeground);
+
+        // Define content
+        contentLabel.setBorder(new EmptyBorder(2, 0, 0, 0));
+        contentLabel.setFont(FontManager.getRunescapeFont());
+        contentLabel.setForeground(darkerForeground);
+
+        body.add(titleLabel, BorderLayout.NORTH);
+        body.add(contentLabel, BorderLayout.SOUTH);
+
+        // Set headerAndBody panel as parent of header and body panels
+        headerAndBody.add(header);
+        headerAndBody.add(body);
+        headerAndBody.add(new Box.Filler(new Dimension(0, 0),
+                new Dimension(0, Short.MAX_VALUE),
+                new Dimension(0, Short.MAX_VALUE)));
+
+        // Set full panel as parent of icon and headerAndBody panels
+        fullPanel.add(icon, BorderLayout.WEST);
+        fullPanel.add(headerAndBody, BorderLayout.CENTER);
+    }
+
+    void setHoveredIndex(int hoveredIndex) {
+        this.hoveredIndex = hoveredIndex;
+    }
+
+    void setPressedIndex(int pressedIndex) {
+        this.pressedIndex = pressedIndex;
+    }
+
+    void setShareCounts(ToIntFunction<String> shareCounts) {
+        this.shareCounts = shareCounts;
+    }
+
+    void setLoadedArt(Function<String, ImageIcon> loadedArt) {
+        this.loadedArt = loadedArt;
+    }
+
+    void setExpandedKey(String expandedKey) {
+        this.expandedKey = expandedKey;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends LinkItem> list, LinkItem item, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        Color backgroundColor = DEFAULT_BACKGROUND;
+        Color hoverColor = DEFAULT_HOVER_BACKGROUND;
+        icon.setIcon(null);
+        ImageIcon art = getArt(item);
+
+        switch (item.getType()) {
+            case SPOTIFY_LINK:
+                icon.setIcon(art != null ? art : DEFAULT_SPOTIFY_ICON);
+                backgroundColor = SPOTIFY_BACKGROUND;
+                hoverColor = SPOTIFY_HOVER_BACKGROUND;
+                break;
+            case YOUTUBE_LINK:
+                icon.setIcon(art != null ? art : DEFAULT_YOUTUBE_ICON);
+                backgroundColor = YOUTUBE_BACKGROUND;
+                hoverColor = YOUTUBE_HOVER_BACKGROUND;
+                break;
+        }
+
+        if (index == pressedIndex) {
+            fullPanel.setBackground(hoverColor.brighter());
+        } else if (index == hoveredIndex) {
+            fullPanel.setBackground(hoverColor);
+        } else {
+            fullPanel.setBackground(backgroundColor);
+        }
+
+        int shareCount = shareCounts != null ? shareCounts.applyAsInt(item.getKey()) : 1;
+        String type = shareCount > 1 ? item.getType().value + " x" + shareCount : item.getType().value;
+        LinkKind kind = item.isPlaceholder() ? null : LinkItem.kindOf(item.getKey());
+        if (kind != null && kind.collection) {
+            // Clicking the row shows or hides its tracks
+            type += item.getKey().equals(expandedKey) ? " \u25BE" : " \u25B8";
+        }
+        typeLabel.setText(type);
+        timeLabel.setText(dateTimeFormatter.format(item.getTimestamp()));
+        titleLabel.setText(item.getTitle());
+        contentLabel.setText(item.getContent());
+        return fullPanel;
+    }
+
+    /**
+     * @return the item's album art, or null until it is loaded, in which case the default icon is shown
+     */
+    private ImageIcon getArt(LinkItem item) {
+        return item.getImageUrl() != null ? loadedArt.apply(item.getImageUrl()) : null;
+    }
+}
@@ -1,9 +1,12 @@
 package com.sharelinks;
 
+import com.sharelinks.models.ShareOverflowPolicy;
 import com.sharelinks.models.spotify.SpotifyLinkType;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
 @ConfigGroup("sharelinks")
 public interface ShareLinksConfig extends Config {
@@ -26,4 +29,184 @@ public interface ShareLinksConfig extends Config {
     default SpotifyLinkType spotifyLinkType() {
         return SpotifyLinkType.WEB;
     }
+
+    @ConfigItem(
+            position = 2,
+            keyName = "enableYouTubeLinks",
+            name = "Enable YouTube Links",
+            description = "Configures whether sharing YouTube links is enabled"
+    )
+    default boolean enableYouTubeLinks() {
+        return true;
+    }
+
+    @ConfigItem(
+            position = 3,
+            keyName = "trackCacheSize",
+            name = "Track Cache Size",
+            description = "Configures how many resolved Spotify tracks are remembered to avoid looking them up again"
+    )
+    @Range(
+            min = 0,
+            max = 10000
+    )
+    @Units(" tracks")
+    default int trackCacheSize() {
+        return 500;
+    }
+
+    @ConfigItem(
+            position = 4,
+            keyName = "trackCacheTtlHours",
+            name = "Track Cache Hours",
+            description = "Configures how many hours a resolved Spotify track is remembered before it is looked up again"
+    )
+    @Range(
+            min = 1,
+            max = 720
+    )
+    @Units(" hours")
+    default int trackCacheTtlHours() {
+        return 168;
+    }
+
+    @ConfigItem(
+            position = 5,
+            keyName = "albumArtMemoryBudgetKb",
+            name = "Album Art Memory",
+            description = "Configures how much memory decoded album art may use before the least recently viewed art is dropped and later reloaded from disk"
+    )
+    @Range(
+            min = 512,
+            max = 65536
+    )
+    @Units(" KB")
+    default int albumArtMemoryBudgetKb() {
+        return 4096;
+    }
+
+    @ConfigItem(
+            position = 6,
+            keyName = "trackBatchWindowMs",
+            name = "Track Lookup Window",
+            description = "Configures how long to wait for more shared tracks so they can be looked up together in one request"
+    )
+    @Range(
+            min = 0,
+            max = 1000
+    )
+    @Units(Units.MILLISECONDS)
+    default int trackBatchWindowMs() {
+        return 100;
+    }
+
+    @ConfigItem(
+            position = 7,
+            keyName = "maxLinkItems",
+            name = "Max Shown Links",
+            description = "Configures how many shared links are kept in the panel before the oldest are removed"
+    )
+    default int maxLinkItems() {
+        return 500;
+    }
+
+    @ConfigItem(
+            position = 8,
+            keyName = "saveLinkHistory",
+            name = "Save Link History",
+            description = "Configures whether shared links are saved on disk and restored when the client restarts"
+    )
+    default boolean saveLinkHistory() {
+        return true;
+    }
+
+    @ConfigItem(
+            position = 9,
+            keyName = "historyRetention",
+            name = "Link History Size",
+            description = "Configures how many shared links are kept on disk before the oldest are removed"
+    )
+    @Range(
+            min = 1,
+            max = 100000
+    )
+    @Units(" links")
+    default int historyRetention() {
+        return 10000;
+    }
+
+    @ConfigItem(
+            position = 10,
+            keyName = "useLoopbackLogin",
+            name = "Spotify Login Listener",
+            description = "Configures whether Spotify login is completed automatically through a local redirect, instead of copying the redirect URL"
+    )
+    default boolean useLoopbackLogin() {
+        return true;
+    }
+
+    @ConfigItem(
+            position = 11,
+            keyName = "groupRepeatShares",
+            name = "Group Repeat Shares",
+            description = "Configures whether a link shared again moves its existing item to the top, instead of adding an item for every share"
+    )
+    default boolean groupRepeatShares() {
+        return true;
+    }
+
+    @ConfigItem(
+            position = 12,
+            keyName = "maxPendingShares",
+            name = "Max Waiting Shares",
+            description = "Configures how many shared links may wait to be shown before the overflow policy applies"
+    )
+    @Range(
+            min = 1,
+            max = 1000
+    )
+    @Units(" shares")
+    default int maxPendingShares() {
+        return 50;
+    }
+
+    @ConfigItem(
+            position = 13,
+            keyName = "sharesPerPlayerPerMinute",
+            name = "Shares Per Player",
+            description = "Configures how many links another player may share per minute before their shares are ignored, 0 for no limit"
+    )
+    @Range(
+            min = 0,
+            max = 60
+    )
+    @Units(" per min")
+    default int sharesPerPlayerPerMinute() {
+        return 10;
+    }
+
+    @ConfigItem(
+            position = 14,
+            keyName = "shareOverflowPolicy",
+            name = "Too Many Shares",
+            description = "Configures what happens to a shared link when too many shares are already waiting to be shown"
+    )
+    default ShareOverflowPolicy shareOverflowPolicy() {
+        return ShareOverflowPolicy.COLLAPSE_REPEATS;
+    }
+
+    @ConfigItem(
+            position = 15,
+            keyName = "panelUpdateMillis",
+            name = "Panel Update Interval",
+            description = "Configures how many milliseconds new and resolved links are gathered before the panel shows them all at once"
+    )
+    @Range(
+            min = 16,
+            max = 33
+    )
+    @Units(Units.MILLISECONDS)
+    default int panelUpdateMillis() {
+        return 16;
+    }
 }
@@ -0,0 +1,253 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List model showing each shared link once, keyed by provider and canonical id, most recently shared first. Each row
+ * shows the latest share of its link, and a repeat share only bumps the share count and moves the row to the top,
+ * both O(1). Counts cover the shares still held by the chronological {@link ShareLinksListModel}.
+ * <p>
+ * Rows are kept in a linked list. Painting walks it from a cursor left at the last row that was read, so reading the
+ * visible rows one after another stays O(1) per row.
+ */
+class ShareLinksDedupListModel extends AbstractListModel<LinkItem> {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Entry newest;
+    private Entry oldest;
+
+    private Entry cursor;
+    private int cursorIndex;
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public LinkItem getElementAt(int index) {
+        Entry entry = findEntry(index);
+        return entry != null ? entry.item : null;
+    }
+
+    /**
+     * @return the latest share of a shown link, or null if the link is not shown
+     */
+    LinkItem getLatestShare(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.item : null;
+    }
+
+    /**
+     * @return how many times the link has been shared, or 0 if it is not shown
+     */
+    int getShareCount(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.shareCount : 0;
+    }
+
+    /**
+     * Records a new share, moving its link to the top.
+     */
+    void addNewest(LinkItem item) {
+        Entry entry = entries.get(item.getKey());
+        if (entry == null) {
+            entry = new Entry(item);
+            entries.put(item.getKey(), entry);
+            linkNewest(entry);
+            resetCursor();
+            fireIntervalAdded(this, 0, 0);
+            return;
+        }
+
+        entry.item = item;
+        entry.shareCount++;
+        if (entry != newest) {
+            unlink(entry);
+            linkNewest(entry);
+        }
+        resetCursor();
+        // The row's old index is not tracked; with fixed cell sizes this only repaints the visible rows
+        fireContentsChanged(this, 0, entries.size() - 1);
+    }
+
+    /**
+     * Records older shares below the ones already shown, e.g. when restoring history at startup.
+     *
+     * @param items items ordered newest first
+     */
+    void addAllOldest(List<LinkItem> items) {
+        int first = entries.size();
+        for (LinkItem item : items) {
+            Entry entry = entries.get(item.getKey());
+            if (entry != null) {
+                entry.shareCount++;
+            } else {
+                entry = new Entry(item);
+                entries.put(item.getKey(), entry);
+                linkOldest(entry);
+            }
+        }
+
+        resetCursor();
+        if (entries.size() > first) {
+            fireIntervalAdded(this, first, entries.size() - 1);
+        }
+        if (first > 0) {
+            fireContentsChanged(this, 0, first - 1);
+        }
+    }
+
+    /**
+     * Forgets a share that left the chronological list. Shares leave oldest first, so a link whose last share leaves
+     * is always the bottom row.
+     */
+    void removeOldest(LinkItem item) {
+        Entry entry = entries.get(item.getKey());
+        if (entry == null) {
+            return;
+        }
+
+        entry.shareCount--;
+        if (entry.shareCount > 0) {
+            fireContentsChanged(this, 0, entries.size() - 1);
+            return;
+        }
+
+        int index = entry == oldest ? entries.size() - 1 : indexOf(entry);
+        entries.remove(item.getKey());
+        unlink(entry);
+        resetCursor();
+        fireIntervalRemoved(this, index, index);
+    }
+
+    /**
+     * Replaces the latest share of a link (compared by identity) in place, e.g. a placeholder that resolved.
+     */
+    void replace(LinkItem oldItem, LinkItem newItem) {
+        Entry entry = entries.get(oldItem.getKey());
+        if (entry != null && entry.item == oldItem) {
+            entry.item = newItem;
+            fireContentsChanged(this, 0, entries.size() - 1);
+        }
+    }
+
+    /**
+     * @param items shares, newest first
+     * @return the latest share of each link among the shares, once per link, in the order the links first appear
+     */
+    List<LinkItem> collapse(List<LinkItem> items) {
+        Map<String, LinkItem> latestShares = new LinkedHashMap<>();
+        for (LinkItem item : items) {
+            Entry entry = entries.get(item.getKey());
+            if (entry != null) {
+                latestShares.putIfAbsent(item.getKey(), entry.item);
+            }
+        }
+        return new ArrayList<>(latestShares.values());
+    }
+
+    private Entry findEntry(int index) {
+        int size = entries.size();
+        if (index < 0 || index >= size) {
+            return null;
+        }
+
+        // Start from whichever of the ends and the cursor is closest
+        Entry entry = cursor;
+        int entryIndex = cursorIndex;
+        if (entry == null || index < Math.abs(index - entryIndex)) {
+            entry = newest;
+            entryIndex = 0;
+        }
+        if (size - 1 - index < Math.abs(index - entryIndex)) {
+            entry = oldest;
+            entryIndex = size - 1;
+        }
+
+        while (entryIndex < index) {
+            entry = entry.older;
+            entryIndex++;
+        }
+        while (entryIndex > index) {
+            entry = entry.newer;
+            entryIndex--;
+        }
+
+        cursor = entry;
+        cursorIndex = entryIndex;
+        return entry;
+    }
+
+    private int indexOf(Entry target) {
+        int index = 0;
+        for (Entry entry = newest; entry != null; entry = entry.older) {
+            if (entry == target) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    private void linkNewest(Entry entry) {
+        entry.newer = null;
+        entry.older = newest;
+        if (newest != null) {
+            newest.newer = entry;
+        }
+        newest = entry;
+        if (oldest == null) {
+            oldest = entry;
+        }
+    }
+
+    private void linkOldest(Entry entry) {
+        entry.older = null;
+        entry.newer = oldest;
+        if (oldest != null) {
+            oldest.older = entry;
+        }
+        oldest = entry;
+        if (newest == null) {
+            newest = entry;
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.newer != null) {
+            entry.newer.older = entry.older;
+        } else {
+            newest = entry.older;
+        }
+        if (entry.older != null) {
+            entry.older.newer = entry.newer;
+        } else {
+            oldest = entry.newer;
+        }
+        entry.newer = null;
+        entry.older = null;
+    }
+
+    private void resetCursor() {
+        cursor = null;
+        cursorIndex = 0;
+    }
+
+    private static class Entry {
+        private LinkItem item;
+        private int shareCount = 1;
+        private Entry newer;
+        private Entry older;
+
+        private Entry(LinkItem item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.sharelinks;
+
+import com.sharelinks.utilities.ShareLinksMetrics;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collapsible section at the bottom of the panel showing the plugin's metrics. Metrics are only formatted while the
+ * section is expanded and the panel is showing.
+ */
+class ShareLinksDiagnosticsPanel extends JPanel {
+    private static final int REFRESH_INTERVAL_MILLIS = 1000;
+    private static final String COLLAPSED_TITLE = "Diagnostics \u25B8";
+    private static final String EXPANDED_TITLE = "Diagnostics \u25BE";
+
+    private final ShareLinksMetrics metrics;
+    private final JLabel titleLabel = new JLabel(COLLAPSED_TITLE);
+    private final JPanel body = new JPanel(new BorderLayout());
+    private final JTextArea metricsText = new JTextArea();
+    private final JButton dumpButton = new JButton("Dump to file");
+    private final Timer refreshTimer;
+
+    ShareLinksDiagnosticsPanel(ShareLinksMetrics metrics) {
+        this.metrics = metrics;
+
+        setLayout(new BorderLayout());
+        setBackground(ColorScheme.DARK_GRAY_COLOR);
+        setBorder(new EmptyBorder(8, 0, 0, 0));
+
+        titleLabel.setFont(FontManager.getRunescapeSmallFont());
+        titleLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        titleLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        titleLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                setExpanded(!body.isVisible());
+            }
+        });
+
+        metricsText.setEditable(false);
+        metricsText.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 9));
+        metricsText.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        metricsText.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        metricsText.setBorder(new EmptyBorder(4, 4, 4, 4));
+
+        JScrollPane metricsScrollPane = new JScrollPane(metricsText);
+        metricsScrollPane.setBorder(null);
+        metricsScrollPane.setPreferredSize(new Dimension(0, 200));
+
+        dumpButton.setFocusPainted(false);
+        dumpButton.addActionListener(e -> dumpToFile());
+
+        body.setOpaque(false);
+        body.add(metricsScrollPane, BorderLayout.CENTER);
+        body.add(dumpButton, BorderLayout.SOUTH);
+        body.setVisible(false);
+
+        add(titleLabel, BorderLayout.NORTH);
+        add(body, BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MILLIS, e -> refresh());
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (body.isVisible()) {
+            refreshTimer.start();
+        }
+    }
+
+    private void setExpanded(boolean expanded) {
+        body.setVisible(expanded);
+        titleLabel.setText(expanded ? EXPANDED_TITLE : COLLAPSED_TITLE);
+        if (expanded) {
+            refresh();
+            refreshTimer.start();
+        } else {
+            refreshTimer.stop();
+        }
+        revalidate();
+    }
+
+    private void refresh() {
+        metricsText.setText(metrics.Format());
+        metricsText.setCaretPosition(0);
+    }
+
+    private void dumpToFile() {
+        dumpButton.setEnabled(false);
+        CompletableFuture.supplyAsync(metrics::Dump).whenComplete((file, e) -> SwingUtilities.invokeLater(() ->
+        {
+            dumpButton.setEnabled(true);
+            dumpButton.setToolTipText(file != null ? "Dumped to " + file.getPath() : "Could not dump metrics");
+            dumpButton.setText(file != null ? "Dumped " + file.getName() : "Dump failed");
+        }));
+    }
+}
@@ -0,0 +1,160 @@
+package com.sharelinks;
+
+import com.sharelinks.models.ExportFormat;
+import com.sharelinks.models.HistoryExportFilter;
+import com.sharelinks.models.LinkItemType;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collapsible section at the bottom of the panel for exporting the share history to a file. The export runs in the
+ * background; the EDT only hears about it when its progress moves by a whole percent.
+ */
+class ShareLinksExportPanel extends JPanel {
+    private static final String COLLAPSED_TITLE = "Export history \u25B8";
+    private static final String EXPANDED_TITLE = "Export history \u25BE";
+    private static final String ALL_PROVIDERS = "All providers";
+    private static final String DEFAULT_FILE_NAME = "share-links-history";
+
+    private enum Period {
+        ALL_TIME("All time", null),
+        DAY("Last 24 hours", Duration.ofDays(1)),
+        WEEK("Last 7 days", Duration.ofDays(7)),
+        MONTH("Last 30 days", Duration.ofDays(30)),
+        YEAR("Last 365 days", Duration.ofDays(365));
+
+        private final String displayName;
+        // Null to keep every entry
+        private final Duration duration;
+
+        Period(String displayName, Duration duration) {
+            this.displayName = displayName;
+            this.duration = duration;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final ShareLinksPanel.HistoryExporter exporter;
+    private final JLabel titleLabel = new JLabel(COLLAPSED_TITLE);
+    private final JPanel body = new JPanel(new GridLayout(0, 1, 0, 4));
+    private final JComboBox<Period> periodBox = new JComboBox<>(Period.values());
+    private final JComboBox<String> providerBox = new JComboBox<>();
+    private final JComboBox<ExportFormat> formatBox = new JComboBox<>(ExportFormat.values());
+    private final JButton exportButton = new JButton("Export...");
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JLabel statusLabel = new JLabel();
+
+    private File lastDirectory;
+
+    ShareLinksExportPanel(ShareLinksPanel.HistoryExporter exporter) {
+        this.exporter = exporter;
+
+        setLayout(new BorderLayout());
+        setBackground(ColorScheme.DARK_GRAY_COLOR);
+        setBorder(new EmptyBorder(8, 0, 0, 0));
+
+        titleLabel.setFont(FontManager.getRunescapeSmallFont());
+        titleLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        titleLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        titleLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                setExpanded(!body.isVisible());
+            }
+        });
+
+        providerBox.addItem(ALL_PROVIDERS);
+        for (LinkItemType type : LinkItemType.values()) {
+            providerBox.addItem(type.value);
+        }
+
+        exportButton.setFocusPainted(false);
+        exportButton.addActionListener(e -> chooseFileAndExport());
+
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+
+        statusLabel.setFont(FontManager.getRunescapeSmallFont());
+        statusLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+
+        body.setOpaque(false);
+        body.setBorder(new EmptyBorder(4, 0, 0, 0));
+        body.add(periodBox);
+        body.add(providerBox);
+        body.add(formatBox);
+        body.add(exportButton);
+        body.add(progressBar);
+        body.add(statusLabel);
+        body.setVisible(false);
+
+        add(titleLabel, BorderLayout.NORTH);
+        add(body, BorderLayout.CENTER);
+    }
+
+    private void setExpanded(boolean expanded) {
+        body.setVisible(expanded);
+        titleLabel.setText(expanded ? EXPANDED_TITLE : COLLAPSED_TITLE);
+        revalidate();
+    }
+
+    private void chooseFileAndExport() {
+        ExportFormat format = (ExportFormat) formatBox.getSelectedItem();
+        JFileChooser fileChooser = new JFileChooser(lastDirectory);
+        fileChooser.setDialogTitle("Export share history");
+        fileChooser.setSelectedFile(new File(lastDirectory, DEFAULT_FILE_NAME + "." + format.extension));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File destination = fileChooser.getSelectedFile();
+        lastDirectory = destination.getParentFile();
+        export(destination, format, getFilter());
+    }
+
+    private HistoryExportFilter getFilter() {
+        Duration duration = ((Period) periodBox.getSelectedItem()).duration;
+        long sinceMillis = duration != null ? System.currentTimeMillis() - duration.toMillis() : 0;
+        int providerIndex = providerBox.getSelectedIndex();
+        LinkItemType type = providerIndex > 0 ? LinkItemType.values()[providerIndex - 1] : null;
+        return new HistoryExportFilter(sinceMillis, type);
+    }
+
+    private void export(File destination, ExportFormat format, HistoryExportFilter filter) {
+        exportButton.setEnabled(false);
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        statusLabel.setText("Exporting...");
+        statusLabel.setToolTipText(null);
+
+        AtomicInteger shownPercent = new AtomicInteger();
+        exporter.export(destination, format, filter, fraction -> {
+            int percent = (int) (fraction * 100);
+            if (percent > shownPercent.getAndSet(percent)) {
+                SwingUtilities.invokeLater(() -> progressBar.setValue(percent));
+            }
+        }).whenComplete((exported, e) -> SwingUtilities.invokeLater(() ->
+        {
+            exportButton.setEnabled(true);
+            progressBar.setVisible(false);
+            if (exported != null) {
+                statusLabel.setText((exported == 1 ? "1 link" : exported + " links") + " exported to " + destination.getName());
+                statusLabel.setToolTipText(destination.getPath());
+            } else {
+                statusLabel.setText("Export failed");
+            }
+        }));
+    }
+}
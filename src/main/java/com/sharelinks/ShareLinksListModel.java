@@ -0,0 +1,142 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * List model holding the most recent link items, newest first, in a fixed-capacity ring buffer.
+ * Inserting at the top and evicting the oldest item are both O(1), no matter how many items have been shared.
+ */
+class ShareLinksListModel extends AbstractListModel<LinkItem> {
+    private LinkItem[] items;
+    private int head; // ring index of the newest item
+    private int size;
+
+    ShareLinksListModel(int capacity) {
+        items = new LinkItem[Math.max(1, capacity)];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public LinkItem getElementAt(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        return items[(head + index) % items.length];
+    }
+
+    /**
+     * Adds items to the top of the list, evicting the oldest items if the list is full, with one event for the rows
+     * that left and one for the rows that were added.
+     *
+     * @param newerItems items ordered oldest first
+     * @return the evicted items oldest first, including any of the new items that did not fit
+     */
+    List<LinkItem> addAllFirst(List<LinkItem> newerItems) {
+        int kept = Math.min(newerItems.size(), items.length);
+        int removed = Math.max(0, size + kept - items.length);
+        List<LinkItem> evicted = new ArrayList<>(removed + newerItems.size() - kept);
+        if (removed > 0) {
+            for (int index = size - 1; index >= size - removed; index--) {
+                int ringIndex = (head + index) % items.length;
+                evicted.add(items[ringIndex]);
+                items[ringIndex] = null;
+            }
+            size -= removed;
+            fireIntervalRemoved(this, size, size + removed - 1);
+        }
+
+        evicted.addAll(newerItems.subList(0, newerItems.size() - kept));
+        for (LinkItem item : newerItems.subList(newerItems.size() - kept, newerItems.size())) {
+            head = (head - 1 + items.length) % items.length;
+            items[head] = item;
+        }
+        size += kept;
+        if (kept > 0) {
+            fireIntervalAdded(this, 0, kept - 1);
+        }
+        return evicted;
+    }
+
+    /**
+     * Adds older items below the existing ones, as long as there is room for them.
+     *
+     * @param olderItems items ordered newest first
+     * @return how many of the items were added
+     */
+    int addAllLast(List<LinkItem> olderItems) {
+        int first = size;
+        for (LinkItem item : olderItems) {
+            if (size == items.length) {
+                break;
+            }
+            items[(head + size) % items.length] = item;
+            size++;
+        }
+        if (size > first) {
+            fireIntervalAdded(this, first, size - 1);
+        }
+        return size - first;
+    }
+
+    /**
+     * Replaces an item (compared by identity) in place. Does nothing if the item has already been evicted.
+     *
+     * @return whether the item was found
+     */
+    boolean replace(LinkItem oldItem, LinkItem newItem) {
+        // Items being replaced (e.g. placeholders) are almost always near the top
+        for (int index = 0; index < size; index++) {
+            int ringIndex = (head + index) % items.length;
+            if (items[ringIndex] == oldItem) {
+                items[ringIndex] = newItem;
+                fireContentsChanged(this, index, index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getCapacity() {
+        return items.length;
+    }
+
+    /**
+     * Changes how many items are retained, dropping the oldest items if the list shrinks below its current size.
+     *
+     * @return the dropped items
+     */
+    List<LinkItem> setCapacity(int capacity) {
+        capacity = Math.max(1, capacity);
+        if (capacity == items.length) {
+            return Collections.emptyList();
+        }
+
+        int retained = Math.min(size, capacity);
+        LinkItem[] resized = new LinkItem[capacity];
+        for (int index = 0; index < retained; index++) {
+            resized[index] = items[(head + index) % items.length];
+        }
+        List<LinkItem> dropped = new ArrayList<>(size - retained);
+        for (int index = retained; index < size; index++) {
+            dropped.add(items[(head + index) % items.length]);
+        }
+
+        int removed = size - retained;
+        items = resized;
+        head = 0;
+        size = retained;
+        if (removed > 0) {
+            fireIntervalRemoved(this, retained, retained + removed - 1);
+        }
+        return dropped;
+    }
+}
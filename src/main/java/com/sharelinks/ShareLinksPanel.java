@@ -1,169 +1,548 @@
 package com.sharelinks;
 
+import com.sharelinks.models.ExportFormat;
+import com.sharelinks.models.HistoryExportFilter;
 import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.TrackPage;
+import com.sharelinks.utilities.AlbumArtLoader;
+import com.sharelinks.utilities.ImageCache;
+import com.sharelinks.utilities.ShareLinksMetrics;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.ui.ColorScheme;
 import net.runelite.client.ui.FontManager;
 import net.runelite.client.ui.PluginPanel;
-import net.runelite.client.util.ImageUtil;
+import net.runelite.client.ui.components.IconTextField;
 import net.runelite.client.util.LinkBrowser;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.time.format.DateTimeFormatter;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleConsumer;
 
 @Slf4j
 @Singleton
 public class ShareLinksPanel extends PluginPanel {
 
-    private static final ImageIcon DEFAULT_SPOTIFY_ICON;
-
-    private static final Color DEFAULT_BACKGROUND = new Color(11, 30, 41);
-    private static final Color SPOTIFY_BACKGROUND = new Color(15, 15, 15);
-
-    private static final int CONTENT_WIDTH = 148;
-    private static final int TIME_WIDTH = 20;
+    private static final Cursor HAND_CURSOR = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+    private static final Cursor DEFAULT_CURSOR = Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR);
+    private static final int MIN_UPDATE_MILLIS = 16;
+    private static final int MAX_UPDATE_MILLIS = 33;
+
+    interface TrackPageLoader {
+        /**
+         * @return a future completing with a page of the tracks of an album or playlist, or with null or
+         * exceptionally if it could not be loaded
+         */
+        CompletableFuture<TrackPage> load(LinkKind kind, String id, int offset, int limit);
+    }
 
-    static {
-        DEFAULT_SPOTIFY_ICON = new ImageIcon(ImageUtil.getResourceStreamFromClass(ShareLinksPanel.class, "default-spotify.png"));
+    interface HistoryExporter {
+        /**
+         * @param progress called off the EDT with the fraction of the history exported so far
+         * @return a future completing with how many links were exported, or exceptionally if the export failed
+         */
+        CompletableFuture<Integer> export(File destination, ExportFormat format, HistoryExportFilter filter,
+                                          DoubleConsumer progress);
     }
 
     private final ShareLinksConfig config;
-    private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm");
+    private final ShareLinksMetrics metrics;
+    private final ImageCache imageCache;
+    private final AlbumArtLoader albumArtLoader;
+    private final ShareLinksListModel listModel;
+    private final ShareLinksSearchIndex searchIndex = new ShareLinksSearchIndex();
+    private final ShareLinksSearchResultsModel searchResultsModel = new ShareLinksSearchResultsModel();
+    private final ShareLinksDedupListModel dedupModel = new ShareLinksDedupListModel();
+    private final ShareLinksCellRenderer cellRenderer = new ShareLinksCellRenderer();
+    private final JList<LinkItem> linkList;
+    private final IconTextField searchBar = new IconTextField();
+    private final JLabel artMemoryLabel = new JLabel();
+    private final ShareLinksTrackListPanel trackListPanel;
+    private final Timer updateTimer;
+
+    // Changes waiting for the next update tick: new items oldest first, and their places in that list
+    private final List<LinkItem> pendingItems = new ArrayList<>();
+    private final Map<LinkItem, Integer> pendingItemIndexes = new IdentityHashMap<>();
+    // Replacements of items already shown, by the item they replace
+    private final Map<LinkItem, LinkItem> pendingReplacements = new IdentityHashMap<>();
+
+    // Null while not searching
+    private String searchQuery;
+    private boolean groupRepeatShares;
+    private boolean artRequestScheduled;
+    private TrackPageLoader trackPageLoader;
+    private HistoryExporter historyExporter;
 
     @Inject
-    ShareLinksPanel(ShareLinksConfig config) {
-        super();
+    ShareLinksPanel(ShareLinksConfig config, ShareLinksMetrics metrics, ImageCache imageCache, AlbumArtLoader albumArtLoader) {
+        // Don't let PluginPanel wrap us in a scroll pane, the list needs its own viewport to only paint visible rows
+        super(false);
         this.config = config;
+        this.metrics = metrics;
+        this.imageCache = imageCache;
+        this.albumArtLoader = albumArtLoader;
 
         setBorder(new EmptyBorder(10, 10, 10, 10));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
-        setLayout(new GridLayout(0, 1, 0, 4));
-    }
-
-    public void addItemToPanel(LinkItem item) {
-        // Layout of an item:
-        // |--------------------------|
-        // ||----| TYPE          TIME |
-        // ||ICON|       TITLE        |
-        // ||----|      CONTENT       |
-        // |--------------------------|
-
-        // Define full panel
-        JPanel fullPanel = new JPanel(new BorderLayout());
-        fullPanel.setPreferredSize(new Dimension(0, 56));
-
-        // Define icon
-        JLabel icon = new JLabel();
-        icon.setPreferredSize(new Dimension(64, 64));
-        icon.setBorder(new EmptyBorder(0, 0, 0, 0));
-
-        switch (item.getType()) {
-            case SPOTIFY_LINK:
-                if (item.getIcon() != null) {
-                    icon.setIcon(item.getIcon());
-                } else {
-                    icon.setIcon(DEFAULT_SPOTIFY_ICON);
-                }
-                fullPanel.setBackground(SPOTIFY_BACKGROUND);
-                break;
-        }
-
-        // Define panel to contain header and body
-        JPanel headerAndBody = new JPanel();
-        headerAndBody.setLayout(new BoxLayout(headerAndBody, BoxLayout.Y_AXIS));
-        headerAndBody.setBorder(new EmptyBorder(4, 8, 4, 4));
-        headerAndBody.setBackground(null);
-
-        // Define header, which contains item type and timestamp
-        JPanel header = new JPanel();
-        header.setLayout(new BorderLayout());
-        header.setBackground(null);
-
-        Color darkerForeground = UIManager.getColor("Label.foreground").darker();
-
-        // Define item type
-        JLabel typeLabel = new JLabel(item.getType().value);
-        typeLabel.setFont(FontManager.getRunescapeFont());
-        typeLabel.setBackground(null);
-        typeLabel.setForeground(darkerForeground);
-        typeLabel.setPreferredSize(new Dimension(CONTENT_WIDTH - TIME_WIDTH, 0));
-
-        // Define timestamp
-        JLabel timeLabel = new JLabel(dateTimeFormatter.format(item.getTimestamp()));
-        timeLabel.setFont(FontManager.getRunescapeFont());
-        timeLabel.setForeground(darkerForeground);
-
-        header.add(typeLabel, BorderLayout.WEST);
-        header.add(timeLabel, BorderLayout.EAST);
-
-        // Define body, which contains item title and content
-        JPanel body = new JPanel(new BorderLayout());
-        body.setBackground(null);
-
-        // Define title
-        JLabel titleLabel = new JLabel(item.getTitle(), SwingConstants.CENTER);
-        titleLabel.setBorder(new EmptyBorder(2, 0, 0, 0));
-        titleLabel.setFont(FontManager.getRunescapeBoldFont());
-        titleLabel.setForeground(darkerForeground);
-
-        // Define content
-        JLabel contentLabel = new JLabel(item.getContent(), SwingConstants.CENTER);
-        contentLabel.setBorder(new EmptyBorder(2, 0, 0, 0));
-        contentLabel.setFont(FontManager.getRunescapeFont());
-        contentLabel.setForeground(darkerForeground);
-
-        body.add(titleLabel, BorderLayout.NORTH);
-        body.add(contentLabel, BorderLayout.SOUTH);
-
-        // Set headerAndBody panel as parent of header and body panels
-        headerAndBody.add(header);
-        headerAndBody.add(body);
-        headerAndBody.add(new Box.Filler(new Dimension(0, 0),
-                new Dimension(0, Short.MAX_VALUE),
-                new Dimension(0, Short.MAX_VALUE)));
-
-        // Set full panel as parent of icon and headerAndBody panels
-        fullPanel.add(icon, BorderLayout.WEST);
-        fullPanel.add(headerAndBody, BorderLayout.CENTER);
-
-        Color backgroundColor = fullPanel.getBackground();
-        Color hoverColor = backgroundColor.brighter().brighter();
-        Color pressedColor = hoverColor.brighter();
-
-        fullPanel.addMouseListener(new MouseAdapter() {
+        setLayout(new BorderLayout());
+
+        listModel = new ShareLinksListModel(config.maxLinkItems());
+        groupRepeatShares = config.groupRepeatShares();
+        cellRenderer.setShareCounts(groupRepeatShares ? dedupModel::getShareCount : null);
+        cellRenderer.setLoadedArt(this::getLoadedArt);
+
+        linkList = new JList<>(groupRepeatShares ? dedupModel : listModel);
+        linkList.setCellRenderer(cellRenderer);
+        linkList.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        linkList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Fixed cell sizes keep layout O(1) instead of measuring every row
+        linkList.setFixedCellHeight(ShareLinksCellRenderer.ITEM_HEIGHT + ShareLinksCellRenderer.ITEM_GAP);
+        linkList.setFixedCellWidth(PANEL_WIDTH - 20);
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
             @Override
-            public void mouseEntered(MouseEvent e) {
-                fullPanel.setBackground(hoverColor);
-                fullPanel.setCursor(new Cursor(Cursor.HAND_CURSOR));
+            public void mouseMoved(MouseEvent e) {
+                setHoveredIndex(getIndexAt(e.getPoint()));
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
-                fullPanel.setBackground(backgroundColor);
-                fullPanel.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+                cellRenderer.setPressedIndex(-1);
+                setHoveredIndex(-1);
             }
 
             @Override
             public void mousePressed(MouseEvent e) {
-                fullPanel.setBackground(pressedColor);
+                cellRenderer.setPressedIndex(getIndexAt(e.getPoint()));
+                linkList.repaint();
             }
 
             @Override
             public void mouseReleased(MouseEvent e) {
-                fullPanel.setBackground(hoverColor);
-                LinkBrowser.browse(item.getUrl());
+                int index = getIndexAt(e.getPoint());
+                cellRenderer.setPressedIndex(-1);
+                linkList.repaint();
+
+                LinkItem item = linkList.getModel().getElementAt(index);
+                if (item != null && isCollection(item)) {
+                    toggleTracks(item);
+                } else if (item != null) {
+                    LinkBrowser.browse(item.getUrl());
+                }
+            }
+        };
+        linkList.addMouseListener(mouseAdapter);
+        linkList.addMouseMotionListener(mouseAdapter);
+
+        JScrollPane scrollPane = new JScrollPane(linkList);
+        scrollPane.setBorder(null);
+        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(ShareLinksCellRenderer.ITEM_HEIGHT / 2);
+        // Album art is only loaded for the rows in view
+        scrollPane.getViewport().addChangeListener(e -> scheduleArtRequest());
+
+        searchBar.setIcon(IconTextField.Icon.SEARCH);
+        searchBar.setPreferredSize(new Dimension(PANEL_WIDTH - 20, 30));
+        searchBar.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        searchBar.setHoverBackgroundColor(ColorScheme.DARK_GRAY_HOVER_COLOR);
+        searchBar.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                search(searchBar.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                search(searchBar.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                search(searchBar.getText());
             }
         });
 
-        // add to the very top of, revalidate, and repaint the plugin panel
-        add(fullPanel, 0);
-        revalidate();
-        repaint();
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
+        searchPanel.setBorder(new EmptyBorder(0, 0, 8, 0));
+        searchPanel.add(searchBar, BorderLayout.CENTER);
+
+        artMemoryLabel.setFont(FontManager.getRunescapeSmallFont());
+        artMemoryLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        artMemoryLabel.setBorder(new EmptyBorder(4, 0, 0, 0));
+        searchPanel.add(artMemoryLabel, BorderLayout.SOUTH);
+        updateArtMemory();
+
+        trackListPanel = new ShareLinksTrackListPanel(this::collapseTracks);
+
+        JPanel linksPanel = new JPanel(new BorderLayout());
+        linksPanel.setOpaque(false);
+        linksPanel.add(scrollPane, BorderLayout.CENTER);
+        linksPanel.add(trackListPanel, BorderLayout.SOUTH);
+
+        add(searchPanel, BorderLayout.NORTH);
+        add(linksPanel, BorderLayout.CENTER);
+
+        JPanel toolsPanel = new JPanel(new BorderLayout());
+        toolsPanel.setOpaque(false);
+        toolsPanel.add(new ShareLinksExportPanel(this::exportHistory), BorderLayout.NORTH);
+        toolsPanel.add(new ShareLinksDiagnosticsPanel(metrics), BorderLayout.SOUTH);
+        add(toolsPanel, BorderLayout.SOUTH);
+
+        updateTimer = new Timer(MIN_UPDATE_MILLIS, e -> flushUpdates());
+        updateTimer.setRepeats(false);
+    }
+
+    /**
+     * Adds an item to the very top of the panel, evicting the oldest item once the configured maximum is reached.
+     * The item is shown on the next update tick, together with everything else added or replaced until then.
+     *
+     * @param item
+     */
+    public void addItemToPanel(LinkItem item) {
+        pendingItemIndexes.put(item, pendingItems.size());
+        pendingItems.add(item);
+        scheduleFlush();
+    }
+
+    /**
+     * Records another share of a link that is already shown and resolved, reusing its resolved item, so that a
+     * repeat share needs no lookup.
+     *
+     * @param key the key of the shared link, see {@link LinkItem#keyOf}
+     * @return the item recorded for the share, or null if the link is not shown or is still being resolved
+     */
+    public LinkItem addRepeatShareToPanel(String key, String sender, LocalDateTime timestamp) {
+        LinkItem latestShare = dedupModel.getLatestShare(key);
+        if (latestShare == null || latestShare.isPlaceholder()) {
+            return null;
+        }
+
+        LinkItem item = latestShare.withShare(sender, timestamp);
+        addItemToPanel(item);
+        return item;
+    }
+
+    /**
+     * Adds previously shared items below the ones already shown, e.g. when restoring history at startup.
+     *
+     * @param items items ordered newest first
+     */
+    public void addOlderItemsToPanel(List<LinkItem> items) {
+        long start = metrics.StartTimer();
+        updateCapacity();
+        int added = listModel.addAllLast(items);
+        for (int i = 0; i < added; i++) {
+            searchIndex.addOldest(items.get(i));
+        }
+        dedupModel.addAllOldest(items.subList(0, added));
+        if (searchQuery != null && added > 0) {
+            search(searchQuery);
+        }
+        scheduleArtRequest();
+        metrics.RecordEdt(ShareLinksMetrics.PANEL_RESTORE, start);
+    }
+
+    /**
+     * Replaces a previously added item (e.g. a placeholder) in place. Does nothing if the item is no longer shown.
+     *
+     * @param oldItem item previously passed to addItemToPanel()
+     * @param item
+     */
+    public void replaceItemInPanel(LinkItem oldItem, LinkItem item) {
+        Integer index = pendingItemIndexes.remove(oldItem);
+        if (index != null) {
+            // Not shown yet, so the old item never will be
+            pendingItems.set(index, item);
+            pendingItemIndexes.put(item, index);
+            return;
+        }
+
+        pendingReplacements.put(oldItem, item);
+        scheduleFlush();
+    }
+
+    /**
+     * Applies every change waiting for the update tick at once, so a burst of shares costs one layout and paint.
+     */
+    void flushUpdates() {
+        updateTimer.stop();
+        int count = pendingItems.size() + pendingReplacements.size();
+        if (count == 0) {
+            return;
+        }
+
+        long start = metrics.StartTimer();
+        updateCapacity();
+        if (!pendingItems.isEmpty()) {
+            addNewItems(new ArrayList<>(pendingItems));
+            pendingItems.clear();
+            pendingItemIndexes.clear();
+        }
+        for (Map.Entry<LinkItem, LinkItem> replacement : pendingReplacements.entrySet()) {
+            replaceItem(replacement.getKey(), replacement.getValue());
+        }
+        pendingReplacements.clear();
+        scheduleArtRequest();
+        metrics.Add(ShareLinksMetrics.PANEL_FLUSH_ITEMS, count);
+        metrics.RecordEdt(ShareLinksMetrics.PANEL_FLUSH, start);
+    }
+
+    /**
+     * Repaints the rows in view once album art they may show has loaded. Only visible rows are painted.
+     */
+    public void onAlbumArtLoaded(String imageUrl) {
+        updateArtMemory();
+        linkList.repaint();
+    }
+
+    /**
+     * Shows how much memory decoded album art is using, e.g. after art was loaded or dropped.
+     */
+    public void updateArtMemory() {
+        artMemoryLabel.setText(String.format("Album art: %.1f of %.1f MB",
+                imageCache.GetMemoryBytes() / (1024.0 * 1024.0), imageCache.GetBudgetBytes() / (1024.0 * 1024.0)));
+    }
+
+    /**
+     * @param trackPageLoader loads the pages of tracks shown when an album or playlist is expanded
+     */
+    public void setTrackPageLoader(TrackPageLoader trackPageLoader) {
+        this.trackPageLoader = trackPageLoader;
+    }
+
+    /**
+     * @param historyExporter exports the share history to a file in the background
+     */
+    public void setHistoryExporter(HistoryExporter historyExporter) {
+        this.historyExporter = historyExporter;
+    }
+
+    /**
+     * Switches between showing each link once, with its share count, and showing every share in order.
+     */
+    public void setGroupRepeatShares(boolean groupRepeatShares) {
+        if (this.groupRepeatShares == groupRepeatShares) {
+            return;
+        }
+
+        this.groupRepeatShares = groupRepeatShares;
+        cellRenderer.setShareCounts(groupRepeatShares ? dedupModel::getShareCount : null);
+        if (searchQuery != null) {
+            search(searchQuery);
+        } else {
+            updateListModel();
+        }
+    }
+
+    /**
+     * Shows only the items matching the query, or all items if the query has no words.
+     */
+    void search(String query) {
+        long start = metrics.StartTimer();
+        List<LinkItem> results = searchIndex.search(query);
+        if (results == null) {
+            searchQuery = null;
+        } else {
+            searchQuery = query;
+            searchResultsModel.setItems(groupRepeatShares ? dedupModel.collapse(results) : results);
+        }
+        updateListModel();
+        metrics.RecordEdt(ShareLinksMetrics.PANEL_SEARCH, start);
+    }
+
+    private static boolean isCollection(LinkItem item) {
+        LinkKind kind = LinkItem.kindOf(item.getKey());
+        return kind != null && kind.collection && !item.isPlaceholder();
+    }
+
+    /**
+     * Expands an album or playlist to list its tracks below the links, or collapses it if it is already expanded.
+     * Only one is expanded at a time, and its tracks are only loaded while it is.
+     */
+    private void toggleTracks(LinkItem item) {
+        if (item.getKey().equals(trackListPanel.getExpandedKey()) || trackPageLoader == null) {
+            collapseTracks();
+            return;
+        }
+
+        LinkKind kind = LinkItem.kindOf(item.getKey());
+        String id = LinkItem.idOf(item.getKey());
+        TrackPageLoader loader = trackPageLoader;
+        trackListPanel.expand(item, new ShareLinksTrackListModel(
+                (offset, limit) -> loader.load(kind, id, offset, limit),
+                SwingUtilities::invokeLater,
+                trackListPanel::updateStatus));
+        cellRenderer.setExpandedKey(item.getKey());
+        linkList.repaint();
+    }
+
+    private void collapseTracks() {
+        trackListPanel.collapse();
+        cellRenderer.setExpandedKey(null);
+        linkList.repaint();
+    }
+
+    private CompletableFuture<Integer> exportHistory(File destination, ExportFormat format, HistoryExportFilter filter,
+                                                     DoubleConsumer progress) {
+        if (historyExporter == null) {
+            CompletableFuture<Integer> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("No history exporter"));
+            return failed;
+        }
+        return historyExporter.export(destination, format, filter, progress);
+    }
+
+    private void scheduleFlush() {
+        if (!updateTimer.isRunning()) {
+            // The config panel enforces the range, but a hand-edited profile can still hold any value
+            updateTimer.setInitialDelay(Math.max(MIN_UPDATE_MILLIS, Math.min(MAX_UPDATE_MILLIS, config.panelUpdateMillis())));
+            updateTimer.start();
+        }
+    }
+
+    /**
+     * @param items items ordered oldest first
+     */
+    private void addNewItems(List<LinkItem> items) {
+        List<LinkItem> evictedItems = listModel.addAllFirst(items);
+        for (LinkItem item : items) {
+            searchIndex.addNewest(item);
+            dedupModel.addNewest(item);
+            if (searchQuery != null && !groupRepeatShares && searchIndex.matches(item, searchQuery)) {
+                searchResultsModel.addFirst(item);
+            }
+        }
+        // Oldest first
+        for (LinkItem evictedItem : evictedItems) {
+            removeShare(evictedItem);
+        }
+        if (searchQuery != null && groupRepeatShares) {
+            // The links' rows may already be results, so find their places again
+            search(searchQuery);
+        }
+    }
+
+    private void replaceItem(LinkItem oldItem, LinkItem item) {
+        if (listModel.replace(oldItem, item)) {
+            searchIndex.replace(oldItem, item);
+            dedupModel.replace(oldItem, item);
+            if (searchQuery != null) {
+                replaceInSearchResults(oldItem, item);
+            }
+        }
+    }
+
+    private void updateListModel() {
+        ListModel<LinkItem> model = searchQuery != null ? searchResultsModel : groupRepeatShares ? dedupModel : listModel;
+        if (linkList.getModel() != model) {
+            linkList.setModel(model);
+            scheduleArtRequest();
+        }
+    }
+
+    /**
+     * Asks for the album art of the rows in view once the current burst of changes has been laid out.
+     */
+    private void scheduleArtRequest() {
+        if (!artRequestScheduled) {
+            artRequestScheduled = true;
+            SwingUtilities.invokeLater(() ->
+            {
+                artRequestScheduled = false;
+                requestVisibleArt();
+            });
+        }
+    }
+
+    /**
+     * @return the art in memory for a row being painted. Art that was dropped to stay within the memory budget is
+     * asked for again, so a row scrolled back into view reloads it from disk.
+     */
+    private ImageIcon getLoadedArt(String imageUrl) {
+        ImageIcon art = imageCache.GetCachedImage(imageUrl);
+        if (art == null) {
+            scheduleArtRequest();
+        }
+        return art;
+    }
+
+    private void requestVisibleArt() {
+        int first = linkList.getFirstVisibleIndex();
+        int last = linkList.getLastVisibleIndex();
+        ListModel<LinkItem> model = linkList.getModel();
+        Set<String> imageUrls = new LinkedHashSet<>();
+        for (int index = first; first >= 0 && index <= last; index++) {
+            LinkItem item = model.getElementAt(index);
+            if (item != null && item.getImageUrl() != null) {
+                imageUrls.add(item.getImageUrl());
+            }
+        }
+        albumArtLoader.SetVisible(imageUrls);
+    }
+
+    private void updateCapacity() {
+        if (listModel.getCapacity() != config.maxLinkItems()) {
+            List<LinkItem> droppedItems = listModel.setCapacity(config.maxLinkItems());
+            // Oldest first
+            for (int i = droppedItems.size() - 1; i >= 0; i--) {
+                removeShare(droppedItems.get(i));
+            }
+        }
+    }
+
+    /**
+     * Forgets a share that left the panel.
+     */
+    private void removeShare(LinkItem item) {
+        if (item == null) {
+            return;
+        }
+        searchIndex.remove(item);
+        dedupModel.removeOldest(item);
+        if (searchQuery != null) {
+            searchResultsModel.remove(item);
+        }
+    }
+
+    private void replaceInSearchResults(LinkItem oldItem, LinkItem item) {
+        int index = searchResultsModel.indexOf(oldItem);
+        boolean matches = searchIndex.matches(item, searchQuery);
+        if (index >= 0 && matches) {
+            searchResultsModel.set(index, item);
+        } else if (index >= 0 || matches) {
+            // The item entered or left the results, e.g. a placeholder that resolved, so find its place again
+            search(searchQuery);
+        }
+    }
+
+    private int getIndexAt(Point point) {
+        int index = linkList.locationToIndex(point);
+        if (index < 0 || !linkList.getCellBounds(index, index).contains(point)) {
+            return -1;
+        }
+        return index;
+    }
+
+    private void setHoveredIndex(int index) {
+        cellRenderer.setHoveredIndex(index);
+        linkList.setCursor(index >= 0 ? HAND_CURSOR : DEFAULT_CURSOR);
+        linkList.repaint();
     }
 }
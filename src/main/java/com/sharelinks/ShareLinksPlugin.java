@@ -2,29 +2,52 @@ package com.sharelinks;
 
 import com.google.inject.Provides;
 import com.sharelinks.models.LinkItem;
-import com.sharelinks.utilities.ClipboardUtility;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMatch;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.PendingShare;
+import com.sharelinks.models.RecognizedLink;
+import com.sharelinks.providers.LinkProviders;
+import com.sharelinks.utilities.AlbumArtLoader;
+import com.sharelinks.utilities.ClipboardWatcher;
 import com.sharelinks.utilities.DiskUtility;
-import com.sharelinks.utilities.SpotifyUtility;
+import com.sharelinks.utilities.HttpPipeline;
+import com.sharelinks.utilities.ImageCache;
+import com.sharelinks.utilities.KeyValueStore;
+import com.sharelinks.utilities.LinkRecognizer;
+import com.sharelinks.utilities.LinkResolver;
+import com.sharelinks.utilities.ShareHistory;
+import com.sharelinks.utilities.ShareHistoryExporter;
+import com.sharelinks.utilities.ShareIngestQueue;
+import com.sharelinks.utilities.ShareLinksMetrics;
+import com.sharelinks.utilities.SpotifyRequestScheduler;
+import com.sharelinks.utilities.SpotifyTokenManager;
+import com.sharelinks.utilities.SpotifyTrackBatcher;
+import com.sharelinks.utilities.SpotifyTrackCache;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.MessageNode;
+import net.runelite.api.Player;
 import net.runelite.api.events.ChatMessage;
 import net.runelite.client.chat.ChatCommandManager;
 import net.runelite.client.chat.ChatMessageBuilder;
 import net.runelite.client.chat.ChatMessageManager;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.util.ImageUtil;
+import net.runelite.client.util.Text;
 
 import javax.inject.Inject;
 import javax.swing.*;
 import java.awt.image.BufferedImage;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
 
 @Slf4j
@@ -32,11 +55,9 @@ import java.util.regex.Pattern;
         name = "Share Links"
 )
 public class ShareLinksPlugin extends Plugin {
+    private static final String CONFIG_GROUP = "sharelinks";
     private static final String SHARE_STRING = "!Share"; // UpperCase "S" -- first letter of all chat messages always seems be UpperCase
 
-    private static final Pattern SPOTIFY_TRACK_PATTERN = Pattern.compile(
-            "^(https://open.spotify.com/track/|spotify:track:)(\\w*)\\?*.*", Pattern.CASE_INSENSITIVE);
-
     @Inject
     private ClientToolbar clientToolbar;
 
@@ -53,16 +74,61 @@ public class ShareLinksPlugin extends Plugin {
     private ShareLinksConfig config;
 
     @Inject
-    private SpotifyUtility spotifyUtility;
+    private SpotifyTokenManager spotifyTokenManager;
+
+    @Inject
+    private SpotifyRequestScheduler spotifyRequestScheduler;
+
+    @Inject
+    private SpotifyTrackBatcher spotifyTrackBatcher;
 
     @Inject
-    private ClipboardUtility clipboardUtility;
+    private ClipboardWatcher clipboardWatcher;
 
     @Inject
     private DiskUtility diskUtility;
 
+    @Inject
+    private KeyValueStore keyValueStore;
+
+    @Inject
+    private LinkRecognizer linkRecognizer;
+
+    @Inject
+    private LinkProviders linkProviders;
+
+    @Inject
+    private LinkResolver linkResolver;
+
+    @Inject
+    private HttpPipeline httpPipeline;
+
+    @Inject
+    private ShareHistory shareHistory;
+
+    @Inject
+    private ShareHistoryExporter shareHistoryExporter;
+
+    @Inject
+    private ShareIngestQueue shareIngestQueue;
+
+    @Inject
+    private SpotifyTrackCache spotifyTrackCache;
+
+    @Inject
+    private ImageCache imageCache;
+
+    @Inject
+    private AlbumArtLoader albumArtLoader;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
     private ShareLinksPanel shareLinksPanel;
 
+    // Only used on the client thread, reused so that recognizing links in chat does not allocate
+    private final LinkMatch linkMatch = new LinkMatch();
+
     @Override
     protected void startUp() {
         shareLinksPanel = injector.getInstance(ShareLinksPanel.class);
@@ -76,6 +142,24 @@ public class ShareLinksPlugin extends Plugin {
         clientToolbar.addNavigation(navButton);
 
         diskUtility.CreateShareLinksDir();
+        keyValueStore.Start();
+        imageCache.Start();
+        spotifyTokenManager.Start();
+        spotifyRequestScheduler.Start();
+        spotifyTrackBatcher.Start();
+        linkResolver.Start();
+        albumArtLoader.Start(shareLinksPanel::onAlbumArtLoaded);
+        shareLinksPanel.setTrackPageLoader(linkResolver::ResolveTrackPage);
+        clipboardWatcher.Start();
+        shareHistory.Start();
+        shareHistoryExporter.Start();
+        shareLinksPanel.setHistoryExporter(shareHistoryExporter::Export);
+        shareIngestQueue.Start(SwingUtilities::invokeLater, this::showShare);
+        registerMetricGauges();
+
+        // Restore the most recent page of history without holding up startUp()
+        shareHistory.LoadRecent(config.maxLinkItems())
+                .thenAccept(items -> SwingUtilities.invokeLater(() -> shareLinksPanel.addOlderItemsToPanel(items)));
 
         // can't registerCommandAsync() because updateChatMessageWithClipboardLink() needs to finish before onChatMessage() is called
         chatCommandManager.registerCommand(SHARE_STRING, this::updateChatMessageWithClipboardLink);
@@ -83,8 +167,54 @@ public class ShareLinksPlugin extends Plugin {
 
     @Override
     protected void shutDown() {
-        // TODO: save shared links on local disk/RuneLite account
         chatCommandManager.unregisterCommand(SHARE_STRING);
+        clipboardWatcher.Shutdown();
+        shareIngestQueue.Shutdown();
+        linkResolver.Shutdown();
+        albumArtLoader.Shutdown();
+        httpPipeline.CancelAll();
+        shareHistoryExporter.Shutdown();
+        shareHistory.Shutdown();
+        spotifyTrackBatcher.Shutdown();
+        spotifyRequestScheduler.Shutdown();
+        spotifyTokenManager.Shutdown();
+        keyValueStore.Shutdown();
+    }
+
+    private void registerMetricGauges() {
+        metrics.RegisterGauge("queue.ingest", shareIngestQueue::GetQueuedCount);
+        metrics.RegisterGauge("ingest.in_flight", shareIngestQueue::GetInFlightCount);
+        metrics.RegisterGauge("queue.resolver", linkResolver::GetQueueDepth);
+        metrics.RegisterGauge("queue.batcher", spotifyTrackBatcher::GetPendingCount);
+        metrics.RegisterGauge("queue.spotify", spotifyRequestScheduler::GetQueueDepth);
+        metrics.RegisterGauge("queue.history", shareHistory::GetPendingCount);
+        metrics.RegisterGauge("queue.album_art", albumArtLoader::GetQueuedCount);
+        metrics.RegisterGauge("queue.http", httpPipeline::GetQueuedCount);
+        metrics.RegisterGauge("http.running", httpPipeline::GetRunningCount);
+        metrics.RegisterGauge("resolve.in_flight", linkResolver::GetInFlightCount);
+        metrics.RegisterGauge("resolve.joined", linkResolver::GetSavedResolutionCount);
+        metrics.RegisterGauge("batcher.requests", spotifyTrackBatcher::GetRequestCount);
+        metrics.RegisterGauge("batcher.batches", spotifyTrackBatcher::GetBatchCount);
+        metrics.RegisterGauge("track_cache.hits", spotifyTrackCache::GetHitCount);
+        metrics.RegisterGauge("track_cache.misses", spotifyTrackCache::GetMissCount);
+        metrics.RegisterGauge("track_cache.evictions", spotifyTrackCache::GetEvictionCount);
+        metrics.RegisterGauge("track_cache.expirations", spotifyTrackCache::GetExpirationCount);
+        metrics.RegisterGauge("track_cache.size", spotifyTrackCache::GetSize);
+        metrics.RegisterGauge("image_cache.memory_hits", imageCache::GetMemoryHitCount);
+        metrics.RegisterGauge("image_cache.disk_hits", imageCache::GetDiskHitCount);
+        metrics.RegisterGauge("image_cache.network_loads", imageCache::GetNetworkLoadCount);
+        metrics.RegisterGauge("image_cache.joined", imageCache::GetSavedLoadCount);
+        metrics.RegisterGauge("image_cache.memory_kb", () -> imageCache.GetMemoryBytes() / 1024);
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged configChanged) {
+        if (CONFIG_GROUP.equals(configChanged.getGroup()) && "groupRepeatShares".equals(configChanged.getKey())) {
+            SwingUtilities.invokeLater(() -> shareLinksPanel.setGroupRepeatShares(config.groupRepeatShares()));
+        } else if (CONFIG_GROUP.equals(configChanged.getGroup()) && "albumArtMemoryBudgetKb".equals(configChanged.getKey())) {
+            imageCache.TrimToBudget();
+            SwingUtilities.invokeLater(shareLinksPanel::updateArtMemory);
+        }
     }
 
     @Provides
@@ -94,23 +224,24 @@ public class ShareLinksPlugin extends Plugin {
 
     /**
      * Listens for player input equaling "!Share" and updates their chatMessage from "!Share" to "!Share <link>"
-     * where link is obtained from clipboard.
+     * where link is the last link copied to the clipboard, as recognized by the {@link ClipboardWatcher}. Runs on the
+     * client thread, so it must not read the clipboard itself.
      *
      * @param chatMessage
      * @param message
      */
     private void updateChatMessageWithClipboardLink(ChatMessage chatMessage, String message) {
         // Whitespace on either sides of "!Share" or lowercase "!share" are OK
-        if (message.trim().toLowerCase().equals(SHARE_STRING.toLowerCase())) {
-            String clipboardString = clipboardUtility.GetStringFromClipboard();
+        if (linkRecognizer.IsShareCommand(message)) {
+            RecognizedLink clipboardLink = clipboardWatcher.GetLastLink();
 
-            Matcher matcher = SPOTIFY_TRACK_PATTERN.matcher(clipboardString);
-            if (config.enableSpotifyLinks() && matcher.find()) {
+            // The provider may have been disabled since the link was copied
+            if (clipboardLink != null && linkProviders.IsEnabled(clipboardLink.getKind())) {
                 // "!Share" -> "!Share <link>"
                 String messageWithLink = new ChatMessageBuilder()
                         .append(message.trim())
                         .append(" ")
-                        .append(matcher.group(0))
+                        .append(clipboardLink.getLink())
                         .build();
 
                 // Update the text of the chatMessage (onChatMessage() picks up new message but old message is rendered)
@@ -151,18 +282,104 @@ public class ShareLinksPlugin extends Plugin {
     }
 
     private void parseChatMessageAndUpdateLinksPanel(ChatMessage chatMessage) {
-        String message = chatMessage.getMessage().trim();
-        if (message.toLowerCase().startsWith(SHARE_STRING.toLowerCase())) {
-            String link = message.substring(SHARE_STRING.length()).trim();
-
-            Matcher matcher = SPOTIFY_TRACK_PATTERN.matcher(link);
-            if (config.enableSpotifyLinks() && matcher.find()) {
-                SwingUtilities.invokeLater(() ->
-                {
-                    LinkItem spotifyItem = spotifyUtility.CreateLinkItemFromSpotifyTrackId(matcher.group(2));
-                    shareLinksPanel.addItemToPanel(spotifyItem);
-                });
-            }
+        String message = chatMessage.getMessage();
+        if (linkRecognizer.Recognize(message, linkMatch) && linkProviders.IsEnabled(linkMatch.getKind())) {
+            LinkKind kind = linkMatch.getKind();
+            String id = linkMatch.getId(message);
+            // Shares beyond the sender's rate limit or the queue's capacity are shed here, and counted
+            shareIngestQueue.Offer(new PendingShare(kind, id, LinkItem.keyOf(kind, id), getSender(chatMessage),
+                    getPriority(chatMessage), LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Shows a share handed out by the {@link ShareIngestQueue}. Runs on the EDT.
+     *
+     * @return a future completing once the share no longer needs the resolver
+     */
+    private CompletableFuture<?> showShare(PendingShare share) {
+        // A link that is already shown and resolved is only moved to the top, without looking it up again
+        LinkItem repeatItem = shareLinksPanel.addRepeatShareToPanel(share.getKey(), share.getSender(), share.getTimestamp());
+        if (repeatItem != null) {
+            shareHistory.Append(repeatItem);
+            showRepeatShares(share, repeatItem);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Resolve off the client thread and the EDT, then swap the placeholder for the resolved item
+        LinkKind kind = share.getKind();
+        String id = share.getId();
+        String sender = share.getSender();
+        LocalDateTime timestamp = share.getTimestamp();
+        LinkItem placeholderItem = linkResolver.CreatePlaceholderItem(kind, id, sender, timestamp);
+        shareLinksPanel.addItemToPanel(placeholderItem);
+        return linkResolver.Resolve(kind, id, sender, timestamp, share.getPriority()).whenComplete((resolved, e) ->
+        {
+            LinkItem item = resolved != null
+                    ? resolved
+                    : linkResolver.CreatePlainItem(kind, id, sender, timestamp);
+            shareHistory.Append(item);
+            SwingUtilities.invokeLater(() ->
+            {
+                shareLinksPanel.replaceItemInPanel(placeholderItem, item);
+                showRepeatShares(share, item);
+            });
+        });
+    }
+
+    /**
+     * Shows the shares of the same link that were folded into a share while it waited, reusing its resolved item.
+     * Runs on the EDT.
+     */
+    private void showRepeatShares(PendingShare share, LinkItem resolvedItem) {
+        for (PendingShare repeat : share.getRepeats()) {
+            LinkItem repeatItem = resolvedItem.withShare(repeat.getSender(), repeat.getTimestamp());
+            shareHistory.Append(repeatItem);
+            shareLinksPanel.addItemToPanel(repeatItem);
         }
     }
+
+    /**
+     * @return how urgently a link shared in this message should be resolved: the user's own shares first, then
+     * friends and friends/clan chat, then strangers in public chat
+     */
+    private LinkPriority getPriority(ChatMessage chatMessage) {
+        if (chatMessage.getType() == ChatMessageType.PRIVATECHATOUT || isLocalPlayer(chatMessage.getName())) {
+            return LinkPriority.OWN;
+        }
+
+        switch (chatMessage.getType()) {
+            case PRIVATECHAT:
+            case MODPRIVATECHAT:
+            case FRIENDSCHAT:
+                return LinkPriority.FRIENDS;
+            default:
+                return client.isFriended(Text.removeTags(chatMessage.getName()), false) ? LinkPriority.FRIENDS : LinkPriority.PUBLIC;
+        }
+    }
+
+    /**
+     * @return the display name of the player who sent the message, or null if it is unknown
+     */
+    private String getSender(ChatMessage chatMessage) {
+        String name;
+        if (chatMessage.getType() == ChatMessageType.PRIVATECHATOUT) {
+            // The name of an outgoing private message is the recipient's
+            Player localPlayer = client.getLocalPlayer();
+            name = localPlayer != null ? localPlayer.getName() : null;
+        } else {
+            name = chatMessage.getName();
+        }
+
+        if (name == null) {
+            return null;
+        }
+        name = Text.removeTags(name).replace('\u00A0', ' ').trim();
+        return name.isEmpty() ? null : name;
+    }
+
+    private boolean isLocalPlayer(String name) {
+        Player localPlayer = client.getLocalPlayer();
+        return localPlayer != null && name != null && Text.toJagexName(Text.removeTags(name)).equals(Text.toJagexName(localPlayer.getName()));
+    }
 }
@@ -0,0 +1,273 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the title, content, provider and sender of the items shown in the panel, updated as
+ * items come and go. Queries match every word as a prefix of some word of an item, e.g. "rick ast" finds
+ * "Rick Astley", and only touch the postings of matching terms, so they stay well within a frame for 50k items.
+ * <p>
+ * Items are compared by identity. Each one occupies a slot; removing an item only frees its slot, and its postings
+ * are dropped lazily once dead entries make up half of a term's postings. Must only be used on the EDT.
+ */
+class ShareLinksSearchIndex {
+    private static final int INITIAL_SLOTS = 64;
+
+    // Term -> entries of the slots holding it, sorted so that a prefix is a contiguous range of terms
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final Map<LinkItem, Integer> slotsByItem = new IdentityHashMap<>();
+
+    private LinkItem[] items = new LinkItem[INITIAL_SLOTS];
+    private String[][] terms = new String[INITIAL_SLOTS][];
+    private int[] sequences = new int[INITIAL_SLOTS];
+    // Bumped whenever a slot is freed, so that postings of its previous item no longer match
+    private int[] generations = new int[INITIAL_SLOTS];
+    private int[] freeSlots = new int[INITIAL_SLOTS];
+    private int freeSlotCount;
+    private int slotCount;
+
+    // Higher sequences are shown higher in the panel
+    private int newestSequence;
+    private int oldestSequence;
+
+    /**
+     * Indexes an item that was added to the top of the panel.
+     */
+    void addNewest(LinkItem item) {
+        add(item, ++newestSequence);
+    }
+
+    /**
+     * Indexes an item that was added to the bottom of the panel.
+     */
+    void addOldest(LinkItem item) {
+        add(item, --oldestSequence);
+    }
+
+    /**
+     * Re-indexes an item that replaced another one in place. Does nothing if the old item is not indexed.
+     */
+    void replace(LinkItem oldItem, LinkItem newItem) {
+        Integer slot = slotsByItem.get(oldItem);
+        if (slot != null) {
+            int sequence = sequences[slot];
+            remove(oldItem);
+            add(newItem, sequence);
+        }
+    }
+
+    void remove(LinkItem item) {
+        Integer slot = slotsByItem.remove(item);
+        if (slot == null) {
+            return;
+        }
+
+        String[] itemTerms = terms[slot];
+        items[slot] = null;
+        terms[slot] = null;
+        generations[slot]++;
+        freeSlots = grow(freeSlots, freeSlotCount + 1);
+        freeSlots[freeSlotCount++] = slot;
+
+        for (String term : itemTerms) {
+            Posting posting = postings.get(term);
+            posting.deadCount++;
+            if (posting.deadCount * 2 > posting.size) {
+                posting.compact();
+                if (posting.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return slotsByItem.size();
+    }
+
+    /**
+     * @return the indexed items matching every word of the query, in panel order, or null if the query has no words
+     */
+    List<LinkItem> search(String query) {
+        String[] words = tokenize(query);
+        if (words.length == 0) {
+            return null;
+        }
+
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = new BitSet(slotCount);
+            for (Posting posting : postings.subMap(word, true, word + Character.MAX_VALUE, true).values()) {
+                posting.collect(wordMatches);
+            }
+
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        // Sort by sequence, keeping the slot in the low bits
+        long[] keys = new long[matches.cardinality()];
+        int keyCount = 0;
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            keys[keyCount++] = ((long) sequences[slot] << 32) | slot;
+        }
+        Arrays.sort(keys);
+
+        List<LinkItem> results = new ArrayList<>(keys.length);
+        for (int i = keys.length - 1; i >= 0; i--) {
+            results.add(items[(int) keys[i]]);
+        }
+        return results;
+    }
+
+    /**
+     * @return whether an indexed item matches every word of the query, without searching the whole index
+     */
+    boolean matches(LinkItem item, String query) {
+        Integer slot = slotsByItem.get(item);
+        if (slot == null) {
+            return false;
+        }
+
+        for (String word : tokenize(query)) {
+            boolean found = false;
+            for (String term : terms[slot]) {
+                if (term.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(LinkItem item, int sequence) {
+        if (slotsByItem.containsKey(item)) {
+            remove(item);
+        }
+
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : allocateSlot();
+        String[] itemTerms = tokenize(item);
+        items[slot] = item;
+        terms[slot] = itemTerms;
+        sequences[slot] = sequence;
+        slotsByItem.put(item, slot);
+
+        long entry = ((long) generations[slot] << 32) | slot;
+        for (String term : itemTerms) {
+            postings.computeIfAbsent(term, k -> new Posting()).add(entry);
+        }
+    }
+
+    private int allocateSlot() {
+        int slot = slotCount++;
+        if (slot == items.length) {
+            int capacity = items.length * 2;
+            items = Arrays.copyOf(items, capacity);
+            terms = Arrays.copyOf(terms, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+        }
+        return slot;
+    }
+
+    private boolean isLive(long entry) {
+        int slot = (int) entry;
+        return generations[slot] == (int) (entry >>> 32) && items[slot] != null;
+    }
+
+    private static String[] tokenize(LinkItem item) {
+        Set<String> itemTerms = new LinkedHashSet<>();
+        addTerms(itemTerms, item.getTitle());
+        addTerms(itemTerms, item.getContent());
+        addTerms(itemTerms, item.getType().value);
+        addTerms(itemTerms, item.getSender());
+        return itemTerms.toArray(new String[0]);
+    }
+
+    private static String[] tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        addTerms(words, text);
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Splits text into lowercase runs of letters and digits.
+     */
+    private static void addTerms(Set<String> terms, String text) {
+        if (text == null) {
+            return;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    private static int[] grow(int[] array, int minLength) {
+        return minLength <= array.length ? array : Arrays.copyOf(array, Math.max(minLength, array.length * 2));
+    }
+
+    private class Posting {
+        // generation << 32 | slot
+        private long[] entries = new long[4];
+        private int size;
+        private int deadCount;
+
+        private void add(long entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        private void collect(BitSet slots) {
+            for (int i = 0; i < size; i++) {
+                if (isLive(entries[i])) {
+                    slots.set((int) entries[i]);
+                }
+            }
+        }
+
+        private void compact() {
+            int liveCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (isLive(entries[i])) {
+                    entries[liveCount++] = entries[i];
+                }
+            }
+            size = liveCount;
+            deadCount = 0;
+            if (entries.length > 8 && size < entries.length / 4) {
+                entries = Arrays.copyOf(entries, Math.max(4, size * 2));
+            }
+        }
+    }
+}
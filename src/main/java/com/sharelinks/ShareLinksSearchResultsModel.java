@@ -0,0 +1,74 @@
+package com.sharelinks;
+
+import com.sharelinks.models.LinkItem;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List model showing the items that match the current search, newest first. Swapped into the panel's list while
+ * searching, so that filtering never rebuilds any components.
+ */
+class ShareLinksSearchResultsModel extends AbstractListModel<LinkItem> {
+    private List<LinkItem> items = new ArrayList<>();
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public LinkItem getElementAt(int index) {
+        if (index < 0 || index >= items.size()) {
+            return null;
+        }
+        return items.get(index);
+    }
+
+    void setItems(List<LinkItem> results) {
+        int oldSize = items.size();
+        items = new ArrayList<>(results);
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        if (!items.isEmpty()) {
+            fireIntervalAdded(this, 0, items.size() - 1);
+        }
+    }
+
+    void addFirst(LinkItem item) {
+        items.add(0, item);
+        fireIntervalAdded(this, 0, 0);
+    }
+
+    /**
+     * @return the index of the item (compared by identity), or -1 if it is not a result
+     */
+    int indexOf(LinkItem item) {
+        for (int index = 0; index < items.size(); index++) {
+            if (items.get(index) == item) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    void set(int index, LinkItem item) {
+        items.set(index, item);
+        fireContentsChanged(this, index, index);
+    }
+
+    /**
+     * Removes an item (compared by identity). Items leave the panel oldest first, so the search starts at the bottom.
+     */
+    void remove(LinkItem item) {
+        for (int index = items.size() - 1; index >= 0; index--) {
+            if (items.get(index) == item) {
+                items.remove(index);
+                fireIntervalRemoved(this, index, index);
+                return;
+            }
+        }
+    }
+}
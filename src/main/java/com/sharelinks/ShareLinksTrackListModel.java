@@ -0,0 +1,170 @@
+package com.sharelinks;
+
+import com.sharelinks.models.CollectionTrack;
+import com.sharelinks.models.TrackPage;
+
+import javax.swing.*;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * List model over the tracks of one album or playlist, of which only a window of pages is held, so that a playlist of
+ * thousands of tracks costs no more memory than a few pages. Pages are loaded as their rows come into view and stream
+ * in as they arrive; the least recently viewed page is dropped once MAX_RESIDENT_PAGES are held, and loaded again if
+ * it is scrolled back to. At most MAX_LOADING_PAGES load at once, and only pages still in view are loaded next, so
+ * dragging the scroll bar through a long playlist does not queue a request for every page passed. Lives on the EDT.
+ */
+class ShareLinksTrackListModel extends AbstractListModel<CollectionTrack> {
+    static final int PAGE_SIZE = 50;
+    static final int MAX_RESIDENT_PAGES = 4;
+    static final int MAX_LOADING_PAGES = 2;
+
+    interface PageLoader {
+        /**
+         * @return a future completing with the page, or with null or exceptionally if it could not be loaded
+         */
+        CompletableFuture<TrackPage> load(int offset, int limit);
+    }
+
+    private final PageLoader loader;
+    // Runs page results on the EDT
+    private final Executor edtExecutor;
+    private final Runnable statusListener;
+
+    // accessOrder = true makes iteration order least recently viewed first
+    private final Map<Integer, List<CollectionTrack>> pages = new LinkedHashMap<Integer, List<CollectionTrack>>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<CollectionTrack>> eldest) {
+            return size() > MAX_RESIDENT_PAGES;
+        }
+    };
+    private final Set<Integer> loadingPages = new HashSet<>();
+    // Pages of the rows in view
+    private int firstWantedPage;
+    private int lastWantedPage;
+    // Unknown until the first page arrives
+    private int total = -1;
+    private boolean failed;
+    private boolean closed;
+
+    /**
+     * @param statusListener called after every page result, e.g. to show whether tracks are loading or failed
+     */
+    ShareLinksTrackListModel(PageLoader loader, Executor edtExecutor, Runnable statusListener) {
+        this.loader = loader;
+        this.edtExecutor = edtExecutor;
+        this.statusListener = statusListener;
+    }
+
+    @Override
+    public int getSize() {
+        return Math.max(0, total);
+    }
+
+    /**
+     * @return the track, or null while its page is not loaded
+     */
+    @Override
+    public CollectionTrack getElementAt(int index) {
+        if (index < 0 || index >= getSize()) {
+            return null;
+        }
+        List<CollectionTrack> page = pages.get(index / PAGE_SIZE);
+        int pageIndex = index % PAGE_SIZE;
+        return page != null && pageIndex < page.size() ? page.get(pageIndex) : null;
+    }
+
+    /**
+     * Loads the pages holding the given rows, or the first page if the track count is not known yet.
+     */
+    void loadRows(int first, int last) {
+        if (total < 0 || first < 0) {
+            firstWantedPage = 0;
+            lastWantedPage = 0;
+        } else {
+            firstWantedPage = first / PAGE_SIZE;
+            lastWantedPage = Math.max(first, last) / PAGE_SIZE;
+        }
+        loadWantedPages();
+    }
+
+    /**
+     * @return how many tracks there are, or -1 if that is not known yet
+     */
+    int getTotal() {
+        return total;
+    }
+
+    boolean isLoading() {
+        return !loadingPages.isEmpty();
+    }
+
+    /**
+     * @return whether the last page result was a failure
+     */
+    boolean hasFailed() {
+        return failed;
+    }
+
+    int getResidentPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Drops every page and ignores pages still on their way.
+     */
+    void close() {
+        closed = true;
+        pages.clear();
+    }
+
+    private void loadWantedPages() {
+        for (int page = firstWantedPage; page <= lastWantedPage && loadingPages.size() < MAX_LOADING_PAGES; page++) {
+            loadPage(page);
+        }
+    }
+
+    private void loadPage(int page) {
+        if (closed || pages.containsKey(page) || loadingPages.contains(page)) {
+            return;
+        }
+
+        loadingPages.add(page);
+        loader.load(page * PAGE_SIZE, PAGE_SIZE)
+                .whenComplete((result, e) -> edtExecutor.execute(() -> onPageLoaded(page, result)));
+    }
+
+    private void onPageLoaded(int page, TrackPage result) {
+        loadingPages.remove(page);
+        if (closed) {
+            return;
+        }
+
+        failed = result == null;
+        if (result != null) {
+            pages.put(page, result.getTracks());
+            int oldTotal = total;
+            total = result.getTotal();
+            if (total != oldTotal) {
+                // The first page, or the album or playlist changed since earlier pages were loaded
+                if (oldTotal > 0) {
+                    fireIntervalRemoved(this, 0, oldTotal - 1);
+                }
+                if (total > 0) {
+                    fireIntervalAdded(this, 0, total - 1);
+                }
+            } else if (page * PAGE_SIZE < total) {
+                int first = page * PAGE_SIZE;
+                fireContentsChanged(this, first, Math.min(total, first + PAGE_SIZE) - 1);
+            }
+            // Rows may have scrolled into view while this page was loading
+            loadWantedPages();
+        }
+        statusListener.run();
+    }
+}
@@ -0,0 +1,187 @@
+package com.sharelinks;
+
+import com.sharelinks.models.CollectionTrack;
+import com.sharelinks.models.LinkItem;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.PluginPanel;
+import net.runelite.client.util.LinkBrowser;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Collapsible section below the links showing the tracks of the expanded album or playlist. Its list has its own
+ * viewport, and only the pages of the rows in it are loaded; see {@link ShareLinksTrackListModel}.
+ */
+class ShareLinksTrackListPanel extends JPanel {
+    private static final int ROW_HEIGHT = 18;
+    private static final int LIST_HEIGHT = 220;
+    private static final String LOADING_TEXT = "Loading...";
+
+    private final JLabel titleLabel = new JLabel();
+    private final JLabel collapseLabel = new JLabel("\u25BE");
+    private final JLabel statusLabel = new JLabel();
+    private final JList<CollectionTrack> trackList = new JList<>();
+
+    // Null while collapsed
+    private LinkItem item;
+    private ShareLinksTrackListModel model;
+
+    ShareLinksTrackListPanel(Runnable onCollapse) {
+        setLayout(new BorderLayout());
+        setBackground(ColorScheme.DARK_GRAY_COLOR);
+        setBorder(new EmptyBorder(8, 0, 0, 0));
+        setVisible(false);
+
+        titleLabel.setFont(FontManager.getRunescapeBoldFont());
+        titleLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        titleLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        titleLabel.setToolTipText("Open in Spotify");
+        titleLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (item != null) {
+                    LinkBrowser.browse(item.getUrl());
+                }
+            }
+        });
+
+        collapseLabel.setFont(FontManager.getRunescapeBoldFont());
+        collapseLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        collapseLabel.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        collapseLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                onCollapse.run();
+            }
+        });
+
+        statusLabel.setFont(FontManager.getRunescapeSmallFont());
+        statusLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+        statusLabel.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                // Retry after a failure
+                if (model != null && model.hasFailed()) {
+                    loadVisibleRows();
+                }
+            }
+        });
+
+        JPanel header = new JPanel(new BorderLayout());
+        header.setOpaque(false);
+        header.add(titleLabel, BorderLayout.CENTER);
+        header.add(collapseLabel, BorderLayout.EAST);
+        header.add(statusLabel, BorderLayout.SOUTH);
+
+        trackList.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+        trackList.setFixedCellHeight(ROW_HEIGHT);
+        trackList.setFixedCellWidth(PluginPanel.PANEL_WIDTH - 20);
+        trackList.setCellRenderer(new TrackRenderer());
+        trackList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                int index = trackList.locationToIndex(e.getPoint());
+                CollectionTrack track = index >= 0 ? trackList.getModel().getElementAt(index) : null;
+                if (track != null && track.getUrl() != null) {
+                    LinkBrowser.browse(track.getUrl());
+                }
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(trackList);
+        scrollPane.setBorder(null);
+        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.setPreferredSize(new Dimension(0, LIST_HEIGHT));
+        scrollPane.getVerticalScrollBar().setUnitIncrement(ROW_HEIGHT);
+        scrollPane.getViewport().addChangeListener(e -> loadVisibleRows());
+
+        add(header, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    /**
+     * @return the key of the expanded album or playlist, or null while collapsed
+     */
+    String getExpandedKey() {
+        return item != null ? item.getKey() : null;
+    }
+
+    void expand(LinkItem item, ShareLinksTrackListModel model) {
+        if (this.model != null) {
+            this.model.close();
+        }
+        this.item = item;
+        this.model = model;
+
+        titleLabel.setText(item.getTitle());
+        trackList.setModel(model);
+        setVisible(true);
+        revalidate();
+        loadVisibleRows();
+        updateStatus();
+    }
+
+    void collapse() {
+        if (model != null) {
+            model.close();
+        }
+        item = null;
+        model = null;
+        trackList.setModel(new DefaultListModel<>());
+        setVisible(false);
+        revalidate();
+    }
+
+    /**
+     * Shows whether tracks are loading or failed to load. Called after every page result.
+     */
+    void updateStatus() {
+        if (model == null) {
+            return;
+        }
+
+        if (model.hasFailed()) {
+            statusLabel.setText("Could not load tracks, click to retry");
+        } else if (model.getTotal() < 0) {
+            statusLabel.setText(LOADING_TEXT);
+        } else {
+            statusLabel.setText(model.getTotal() == 1 ? "1 track" : model.getTotal() + " tracks");
+        }
+        statusLabel.setCursor(Cursor.getPredefinedCursor(model.hasFailed() ? Cursor.HAND_CURSOR : Cursor.DEFAULT_CURSOR));
+    }
+
+    private void loadVisibleRows() {
+        if (model != null) {
+            model.loadRows(trackList.getFirstVisibleIndex(), trackList.getLastVisibleIndex());
+        }
+    }
+
+    private static class TrackRenderer extends DefaultListCellRenderer {
+        TrackRenderer() {
+            setFont(FontManager.getRunescapeSmallFont());
+            setBorder(new EmptyBorder(0, 4, 0, 4));
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                                                      boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, null, index, false, false);
+            CollectionTrack track = (CollectionTrack) value;
+            if (track == null) {
+                setText((index + 1) + ". " + LOADING_TEXT);
+            } else if (track.getArtist().isEmpty()) {
+                setText((index + 1) + ". " + track.getTitle());
+            } else {
+                setText((index + 1) + ". " + track.getTitle() + " - " + track.getArtist());
+            }
+            setBackground(list.getBackground());
+            setForeground(track != null ? ColorScheme.LIGHT_GRAY_COLOR : ColorScheme.MEDIUM_GRAY_COLOR);
+            return this;
+        }
+    }
+}
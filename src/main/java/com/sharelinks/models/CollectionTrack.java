@@ -0,0 +1,15 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One track of a shared album or playlist, as listed under its expanded item.
+ */
+@Data
+@RequiredArgsConstructor
+public class CollectionTrack {
+    private final String title;
+    private final String artist;
+    private final String url;
+}
@@ -0,0 +1,21 @@
+package com.sharelinks.models;
+
+public enum ExportFormat {
+    JSON_LINES("JSON Lines", "jsonl"),
+    CSV("CSV", "csv"),
+    // Spotify links are written as Spotify URIs, which can be pasted straight into a Spotify playlist
+    M3U("M3U playlist", "m3u");
+
+    public final String displayName;
+    public final String extension;
+
+    ExportFormat(String displayName, String extension) {
+        this.displayName = displayName;
+        this.extension = extension;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
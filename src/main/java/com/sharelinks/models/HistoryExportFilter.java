@@ -0,0 +1,22 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Which share history entries to export.
+ */
+@Data
+@RequiredArgsConstructor
+public class HistoryExportFilter {
+    public static final HistoryExportFilter ALL = new HistoryExportFilter(0, null);
+
+    // Entries shared before this epoch millis are left out, 0 to keep every entry
+    private final long sinceMillis;
+    // Only entries of this provider are kept, or entries of every provider if null
+    private final LinkItemType type;
+
+    public boolean matches(LinkHistoryEntry entry) {
+        return entry.timestamp >= sinceMillis && (type == null || type.name().equals(entry.type));
+    }
+}
@@ -0,0 +1,15 @@
+package com.sharelinks.models;
+
+/**
+ * A {@link LinkItem} as it is stored in the share history log, without its icon.
+ */
+public class LinkHistoryEntry {
+    public String type;
+    public String title;
+    public String content;
+    public String url;
+    public String image_url;
+    public long timestamp;
+    public String sender;
+    public String key;
+}
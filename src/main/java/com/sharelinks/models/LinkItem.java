@@ -3,16 +3,62 @@ package com.sharelinks.models;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
-import javax.swing.*;
 import java.time.LocalDateTime;
 
+/**
+ * A shared link as shown in the panel. Items never hold decoded album art, only its URL; the art lives in the
+ * {@link com.sharelinks.utilities.ImageCache} under its memory budget, so a long session's items cost no image memory.
+ */
 @Data
 @RequiredArgsConstructor
 public class LinkItem {
     private final LinkItemType type;
-    private final ImageIcon icon;
     private final String title;
     private final String content;
     private final String url;
+    // Album art or thumbnail, or null if the link has none
+    private final String imageUrl;
     private final LocalDateTime timestamp;
+    // Display name of the player who shared the link, or null if unknown
+    private final String sender;
+    // Identifies the shared link across shares, see keyOf()
+    private final String key;
+    // Shown while the link is still being resolved
+    private final boolean placeholder;
+
+    /**
+     * @return the key of a link, made of its provider and canonical id, e.g. "SPOTIFY_TRACK:4uLU6hMCjMI75M1A2tKUQC"
+     */
+    public static String keyOf(LinkKind kind, String id) {
+        return kind.name() + ":" + id;
+    }
+
+    /**
+     * @return the kind of link a key (see keyOf()) was made for, or null if it is not a known kind
+     */
+    public static LinkKind kindOf(String key) {
+        int separator = key != null ? key.indexOf(':') : -1;
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return LinkKind.valueOf(key.substring(0, separator));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the canonical id a key (see keyOf()) was made for
+     */
+    public static String idOf(String key) {
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    /**
+     * @return this item as shared again by another player or at another time
+     */
+    public LinkItem withShare(String sender, LocalDateTime timestamp) {
+        return new LinkItem(type, title, content, url, imageUrl, timestamp, sender, key, placeholder);
+    }
 }
@@ -0,0 +1,19 @@
+package com.sharelinks.models;
+
+public enum LinkKind {
+    SPOTIFY_TRACK(LinkItemType.SPOTIFY_LINK, "Spotify Track", false),
+    SPOTIFY_ALBUM(LinkItemType.SPOTIFY_LINK, "Spotify Album", true),
+    SPOTIFY_PLAYLIST(LinkItemType.SPOTIFY_LINK, "Spotify Playlist", true),
+    YOUTUBE_VIDEO(LinkItemType.YOUTUBE_LINK, "YouTube Video", false);
+
+    public final LinkItemType itemType;
+    public final String displayName;
+    // Whether the link holds a list of tracks, shown when its item is expanded
+    public final boolean collection;
+
+    LinkKind(LinkItemType itemType, String displayName, boolean collection) {
+        this.itemType = itemType;
+        this.displayName = displayName;
+        this.collection = collection;
+    }
+}
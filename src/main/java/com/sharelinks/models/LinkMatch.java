@@ -0,0 +1,24 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+
+/**
+ * Where a recognized link and its id sit inside a message. Offsets are reused between messages so that recognizing
+ * a link does not allocate; only {@link #getLink} and {@link #getId} create strings.
+ */
+@Data
+public class LinkMatch {
+    private LinkKind kind;
+    private int linkStart;
+    private int linkEnd;
+    private int idStart;
+    private int idEnd;
+
+    public String getLink(CharSequence text) {
+        return text.subSequence(linkStart, linkEnd).toString();
+    }
+
+    public String getId(CharSequence text) {
+        return text.subSequence(idStart, idEnd).toString();
+    }
+}
@@ -0,0 +1,18 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Provider-independent description of a resolved link, from which the panel item is built.
+ */
+@Data
+@RequiredArgsConstructor
+public class LinkMetadata {
+    private final LinkKind kind;
+    private final String id;
+    private final String title;
+    private final String content;
+    private final String url;
+    private final String thumbnailUrl;
+}
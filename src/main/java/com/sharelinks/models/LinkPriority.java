@@ -0,0 +1,19 @@
+package com.sharelinks.models;
+
+/**
+ * How urgently a shared link should be resolved when requests have to wait, most urgent first.
+ */
+public enum LinkPriority {
+    /**
+     * Links the user shared themselves.
+     */
+    OWN,
+    /**
+     * Links shared by friends, in private messages or in friends/clan chat.
+     */
+    FRIENDS,
+    /**
+     * Links shared in public chat by strangers.
+     */
+    PUBLIC
+}
@@ -0,0 +1,26 @@
+package com.sharelinks.models;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A link shared in chat that is waiting to be shown and resolved. Shares are compared by identity, since two shares of
+ * one link by one sender are still two shares, and the repeats folded into a share change while it waits.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PendingShare {
+    private final LinkKind kind;
+    private final String id;
+    private final String key;
+    private final String sender;
+    private final LinkPriority priority;
+    private final LocalDateTime timestamp;
+    // Later shares of the same link folded into this one while it waited, shown once it is resolved. Bounded by the
+    // ShareIngestQueue
+    private final List<PendingShare> repeats = new ArrayList<>();
+}
@@ -0,0 +1,15 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A link recognized outside of chat, e.g. on the clipboard, kept already parsed so that using it is a field read.
+ */
+@Data
+@RequiredArgsConstructor
+public class RecognizedLink {
+    private final LinkKind kind;
+    private final String id;
+    private final String link;
+}
@@ -0,0 +1,31 @@
+package com.sharelinks.models;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * What to do with a shared link when too many shares are already waiting to be shown.
+ */
+@AllArgsConstructor
+public enum ShareOverflowPolicy {
+    /**
+     * Drop the new share.
+     */
+    DROP_NEWEST("Drop new shares"),
+    /**
+     * Drop the oldest waiting share of the least urgent priority, unless the new share is even less urgent.
+     */
+    DROP_OLDEST("Drop oldest shares"),
+    /**
+     * Fold the new share into a waiting share of the same link, which shows it with its sender and time once that
+     * share is resolved, without resolving the link again. A waiting share holds a few repeats at most, and repeats
+     * beyond that are dropped. Otherwise drop the oldest as {@link #DROP_OLDEST}.
+     */
+    COLLAPSE_REPEATS("Collapse repeats");
+
+    private final String policy;
+
+    @Override
+    public String toString() {
+        return policy;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sharelinks.models;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of the tracks of an album or playlist, as returned by one call to a paginated endpoint.
+ */
+@Data
+@RequiredArgsConstructor
+public class TrackPage {
+    // Index of the first track of the page in the whole album or playlist
+    private final int offset;
+    // How many tracks the whole album or playlist has
+    private final int total;
+    private final List<CollectionTrack> tracks;
+}
@@ -3,5 +3,10 @@ package com.sharelinks.models.spotify;
 import java.util.List;
 
 public class SpotifyAlbum {
+    public String name;
+    public List<SpotifyArtist> artists;
     public List<SpotifyImage> images;
+    public SpotifyExternalUrl external_urls;
+    public String uri;
+    public int total_tracks;
 }
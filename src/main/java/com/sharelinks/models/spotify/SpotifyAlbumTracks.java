@@ -0,0 +1,11 @@
+package com.sharelinks.models.spotify;
+
+import java.util.List;
+
+/**
+ * One page of an album's tracks.
+ */
+public class SpotifyAlbumTracks {
+    public List<SpotifyTrack> items;
+    public int total;
+}
@@ -0,0 +1,12 @@
+package com.sharelinks.models.spotify;
+
+import java.util.List;
+
+public class SpotifyPlaylist {
+    public String name;
+    public SpotifyUser owner;
+    public List<SpotifyImage> images;
+    public SpotifyExternalUrl external_urls;
+    public String uri;
+    public SpotifyPlaylistTracks tracks;
+}
@@ -0,0 +1,6 @@
+package com.sharelinks.models.spotify;
+
+public class SpotifyPlaylistTrack {
+    // Null for tracks that are no longer available
+    public SpotifyTrack track;
+}
@@ -0,0 +1,11 @@
+package com.sharelinks.models.spotify;
+
+import java.util.List;
+
+/**
+ * One page of a playlist's tracks.
+ */
+public class SpotifyPlaylistTracks {
+    public List<SpotifyPlaylistTrack> items;
+    public int total;
+}
@@ -0,0 +1,21 @@
+package com.sharelinks.models.spotify;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The subset of {@link SpotifyTrack} that the plugin actually uses, small enough to cache and persist.
+ */
+@Data
+@RequiredArgsConstructor
+public class SpotifyTrackMetadata {
+    private final String trackId;
+    private final String name;
+    private final List<String> artists;
+    private final String uri;
+    private final String externalUrl;
+    private final String albumImageUrl;
+    private final long cachedAtMillis;
+}
@@ -0,0 +1,7 @@
+package com.sharelinks.models.spotify;
+
+import java.util.List;
+
+public class SpotifyTracks {
+    public List<SpotifyTrack> tracks;
+}
@@ -0,0 +1,5 @@
+package com.sharelinks.models.spotify;
+
+public class SpotifyUser {
+    public String display_name;
+}
@@ -0,0 +1,10 @@
+package com.sharelinks.models.youtube;
+
+public class YouTubeOEmbed {
+    public String title;
+    public String author_name;
+    public String author_url;
+    public String thumbnail_url;
+    public int thumbnail_width;
+    public int thumbnail_height;
+}
@@ -0,0 +1,57 @@
+package com.sharelinks.providers;
+
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMetadata;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.TrackPage;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns links of one service into panel items. Links are recognized for every provider at once by
+ * {@link com.sharelinks.utilities.LinkRecognizer}; a provider claims the {@link LinkKind}s it resolves and is only ever
+ * called off the client thread and the EDT, through {@link com.sharelinks.utilities.LinkResolver}.
+ */
+public interface LinkProvider {
+    /**
+     * @return the kinds of recognized link this provider resolves
+     */
+    Set<LinkKind> GetLinkKinds();
+
+    /**
+     * @return whether the user has enabled links of this provider. Called on the client thread, so must be cheap.
+     */
+    boolean IsEnabled();
+
+    /**
+     * @return whether a link of this kind that is only copied, not yet shared, should be resolved ahead of time. Only
+     * worth it when the result is cached until the link is shared, and only allowed when resolving would not ask the
+     * user for anything, such as logging in.
+     */
+    boolean CanPrefetch(LinkKind kind);
+
+    /**
+     * @return the url the item for a link opens, which must be known without resolving anything
+     */
+    String GetLinkUrl(LinkKind kind, String id);
+
+    /**
+     * Looks up the title, content and thumbnail of a link. Called on a resolver thread; local lookups are fine, but
+     * network requests must go through {@link com.sharelinks.utilities.HttpPipeline} rather than block.
+     *
+     * @param priority how urgently the link is needed, for providers whose requests may have to wait
+     * @return a future completing with the metadata, or with null if the link could not be resolved
+     */
+    CompletableFuture<LinkMetadata> ResolveMetadata(LinkKind kind, String id, LinkPriority priority);
+
+    /**
+     * Looks up one page of the tracks of a link whose kind is a {@link LinkKind#collection}. Called on a resolver
+     * thread, like ResolveMetadata(), and only while the user is looking at the link's tracks.
+     *
+     * @return a future completing with the page, or with null if the page could not be loaded
+     */
+    default CompletableFuture<TrackPage> ResolveTrackPage(LinkKind kind, String id, int offset, int limit) {
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sharelinks.providers;
+
+import com.sharelinks.models.LinkKind;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Every available {@link LinkProvider}, looked up by the kind of link it resolves.
+ */
+@Singleton
+public class LinkProviders {
+    private final Map<LinkKind, LinkProvider> providers = new EnumMap<>(LinkKind.class);
+
+    @Inject
+    LinkProviders(SpotifyLinkProvider spotifyLinkProvider, YouTubeLinkProvider youTubeLinkProvider) {
+        Add(spotifyLinkProvider);
+        Add(youTubeLinkProvider);
+    }
+
+    /**
+     * @return the provider for links of this kind, or null if there is none
+     */
+    public LinkProvider Get(LinkKind kind) {
+        return providers.get(kind);
+    }
+
+    /**
+     * @return whether links of this kind can be resolved and are enabled
+     */
+    public boolean IsEnabled(LinkKind kind) {
+        LinkProvider provider = providers.get(kind);
+        return provider != null && provider.IsEnabled();
+    }
+
+    private void Add(LinkProvider provider) {
+        for (LinkKind kind : provider.GetLinkKinds()) {
+            providers.put(kind, provider);
+        }
+    }
+}
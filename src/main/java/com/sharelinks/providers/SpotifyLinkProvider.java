@@ -0,0 +1,213 @@
+package com.sharelinks.providers;
+
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.CollectionTrack;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMetadata;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.TrackPage;
+import com.sharelinks.models.spotify.SpotifyAlbum;
+import com.sharelinks.models.spotify.SpotifyArtist;
+import com.sharelinks.models.spotify.SpotifyExternalUrl;
+import com.sharelinks.models.spotify.SpotifyImage;
+import com.sharelinks.models.spotify.SpotifyLinkType;
+import com.sharelinks.models.spotify.SpotifyPlaylist;
+import com.sharelinks.models.spotify.SpotifyPlaylistTrack;
+import com.sharelinks.models.spotify.SpotifyTrack;
+import com.sharelinks.models.spotify.SpotifyTrackMetadata;
+import com.sharelinks.utilities.SpotifyTokenManager;
+import com.sharelinks.utilities.SpotifyTrackBatcher;
+import com.sharelinks.utilities.SpotifyUtility;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves Spotify tracks through the track cache, then through batched calls to the Spotify Web API. Albums and
+ * playlists resolve to a header from a single call; their tracks are paged in only while the user looks at them.
+ */
+@Singleton
+public class SpotifyLinkProvider implements LinkProvider {
+    private static final String SPOTIFY_TRACK_WEB_URL = "https://open.spotify.com/track/";
+    private static final String SPOTIFY_TRACK_URI = "spotify:track:";
+    private static final String SPOTIFY_ALBUM_WEB_URL = "https://open.spotify.com/album/";
+    private static final String SPOTIFY_ALBUM_URI = "spotify:album:";
+    private static final String SPOTIFY_PLAYLIST_WEB_URL = "https://open.spotify.com/playlist/";
+    private static final String SPOTIFY_PLAYLIST_URI = "spotify:playlist:";
+    private static final String UNAVAILABLE_TRACK_TITLE = "Unavailable track";
+
+    private static final Set<LinkKind> LINK_KINDS = Collections.unmodifiableSet(EnumSet.of(LinkKind.SPOTIFY_TRACK,
+            LinkKind.SPOTIFY_ALBUM, LinkKind.SPOTIFY_PLAYLIST));
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private SpotifyUtility spotifyUtility;
+
+    @Inject
+    private SpotifyTrackBatcher spotifyTrackBatcher;
+
+    @Inject
+    private SpotifyTokenManager spotifyTokenManager;
+
+    @Override
+    public Set<LinkKind> GetLinkKinds() {
+        return LINK_KINDS;
+    }
+
+    @Override
+    public boolean IsEnabled() {
+        return config.enableSpotifyLinks();
+    }
+
+    @Override
+    public boolean CanPrefetch(LinkKind kind) {
+        // Only tracks are kept in the track cache. An expired token would be refreshed first, and a failed refresh
+        // would open the login page
+        return kind == LinkKind.SPOTIFY_TRACK && spotifyTokenManager.HasValidAccessToken();
+    }
+
+    @Override
+    public String GetLinkUrl(LinkKind kind, String id) {
+        boolean web = config.spotifyLinkType() == SpotifyLinkType.WEB;
+        switch (kind) {
+            case SPOTIFY_ALBUM:
+                return web ? SPOTIFY_ALBUM_WEB_URL + id : SPOTIFY_ALBUM_URI + id;
+            case SPOTIFY_PLAYLIST:
+                return web ? SPOTIFY_PLAYLIST_WEB_URL + id : SPOTIFY_PLAYLIST_URI + id;
+            default:
+                return web ? SPOTIFY_TRACK_WEB_URL + id : SPOTIFY_TRACK_URI + id;
+        }
+    }
+
+    @Override
+    public CompletableFuture<LinkMetadata> ResolveMetadata(LinkKind kind, String id, LinkPriority priority) {
+        switch (kind) {
+            case SPOTIFY_ALBUM:
+                return spotifyUtility.GetSpotifyAlbum(id, priority)
+                        .thenApply(album -> album != null ? CreateAlbumMetadata(id, album) : null);
+            case SPOTIFY_PLAYLIST:
+                return spotifyUtility.GetSpotifyPlaylist(id, priority)
+                        .thenApply(playlist -> playlist != null ? CreatePlaylistMetadata(id, playlist) : null);
+            default:
+                return ResolveTrackMetadata(kind, id, priority);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TrackPage> ResolveTrackPage(LinkKind kind, String id, int offset, int limit) {
+        int pageSize = Math.min(limit, SpotifyUtility.MAX_TRACKS_PER_PAGE);
+        switch (kind) {
+            case SPOTIFY_ALBUM:
+                return spotifyUtility.GetSpotifyAlbumTracks(id, offset, pageSize).thenApply(page -> {
+                    if (page == null || page.items == null) {
+                        return null;
+                    }
+                    List<CollectionTrack> tracks = new ArrayList<>(page.items.size());
+                    for (SpotifyTrack track : page.items) {
+                        tracks.add(CreateCollectionTrack(track));
+                    }
+                    return new TrackPage(offset, page.total, tracks);
+                });
+            case SPOTIFY_PLAYLIST:
+                return spotifyUtility.GetSpotifyPlaylistTracks(id, offset, pageSize).thenApply(page -> {
+                    if (page == null || page.items == null) {
+                        return null;
+                    }
+                    List<CollectionTrack> tracks = new ArrayList<>(page.items.size());
+                    for (SpotifyPlaylistTrack item : page.items) {
+                        tracks.add(CreateCollectionTrack(item.track));
+                    }
+                    return new TrackPage(offset, page.total, tracks);
+                });
+            default:
+                return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private CompletableFuture<LinkMetadata> ResolveTrackMetadata(LinkKind kind, String id, LinkPriority priority) {
+        SpotifyTrackMetadata cachedTrack = spotifyUtility.GetCachedSpotifyTrack(id);
+        CompletableFuture<SpotifyTrackMetadata> track = cachedTrack != null
+                ? CompletableFuture.completedFuture(cachedTrack)
+                : spotifyTrackBatcher.GetSpotifyTrack(id, priority).thenApply(spotifyTrack -> spotifyTrack != null
+                        ? spotifyUtility.CacheSpotifyTrack(id, spotifyTrack)
+                        : null);
+        return track.thenApply(metadata -> metadata != null ? CreateLinkMetadata(kind, metadata) : null);
+    }
+
+    private LinkMetadata CreateLinkMetadata(LinkKind kind, SpotifyTrackMetadata track) {
+        String artist = track.getArtists().size() > 0 ? track.getArtists().get(0) : "";
+        String url = config.spotifyLinkType() == SpotifyLinkType.WEB ? track.getExternalUrl() : track.getUri();
+        return new LinkMetadata(kind, track.getTrackId(), track.getName(), artist, url, track.getAlbumImageUrl());
+    }
+
+    private LinkMetadata CreateAlbumMetadata(String id, SpotifyAlbum album) {
+        String artist = album.artists != null && !album.artists.isEmpty() ? album.artists.get(0).name : "";
+        return new LinkMetadata(LinkKind.SPOTIFY_ALBUM, id, album.name, FormatTrackCount(artist, album.total_tracks),
+                GetUrl(album.external_urls, album.uri, LinkKind.SPOTIFY_ALBUM, id), GetSmallestImageUrl(album.images));
+    }
+
+    private LinkMetadata CreatePlaylistMetadata(String id, SpotifyPlaylist playlist) {
+        String owner = playlist.owner != null && playlist.owner.display_name != null ? playlist.owner.display_name : "";
+        int total = playlist.tracks != null ? playlist.tracks.total : 0;
+        return new LinkMetadata(LinkKind.SPOTIFY_PLAYLIST, id, playlist.name, FormatTrackCount(owner, total),
+                GetUrl(playlist.external_urls, playlist.uri, LinkKind.SPOTIFY_PLAYLIST, id),
+                GetSmallestImageUrl(playlist.images));
+    }
+
+    private CollectionTrack CreateCollectionTrack(SpotifyTrack track) {
+        if (track == null) {
+            return new CollectionTrack(UNAVAILABLE_TRACK_TITLE, "", null);
+        }
+
+        StringBuilder artists = new StringBuilder();
+        if (track.artists != null) {
+            for (SpotifyArtist artist : track.artists) {
+                if (artists.length() > 0) {
+                    artists.append(", ");
+                }
+                artists.append(artist.name);
+            }
+        }
+        // Local files have neither a web url nor a playable uri
+        String url = config.spotifyLinkType() == SpotifyLinkType.WEB
+                ? track.external_urls != null ? track.external_urls.spotify : null
+                : track.uri;
+        return new CollectionTrack(track.name, artists.toString(), url);
+    }
+
+    private String GetUrl(SpotifyExternalUrl externalUrls, String uri, LinkKind kind, String id) {
+        String url = config.spotifyLinkType() == SpotifyLinkType.WEB
+                ? externalUrls != null ? externalUrls.spotify : null
+                : uri;
+        return url != null ? url : GetLinkUrl(kind, id);
+    }
+
+    private static String FormatTrackCount(String by, int total) {
+        String tracks = total == 1 ? "1 track" : total + " tracks";
+        return by.isEmpty() ? tracks : by + " - " + tracks;
+    }
+
+    /**
+     * @return the url of the smallest image, which is what an icon needs, or null if there is none
+     */
+    private static String GetSmallestImageUrl(List<SpotifyImage> images) {
+        SpotifyImage smallest = null;
+        if (images != null) {
+            for (SpotifyImage image : images) {
+                // Playlist mosaics may come without a size
+                if (smallest == null || (image.width > 0 && (smallest.width == 0 || image.width < smallest.width))) {
+                    smallest = image;
+                }
+            }
+        }
+        return smallest != null ? smallest.url : null;
+    }
+}
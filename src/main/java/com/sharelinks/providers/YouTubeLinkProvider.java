@@ -0,0 +1,95 @@
+package com.sharelinks.providers;
+
+import com.google.gson.Gson;
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMetadata;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.youtube.YouTubeOEmbed;
+import com.sharelinks.utilities.HttpPipeline;
+import com.sharelinks.utilities.ProviderEndpoints;
+import com.sharelinks.utilities.ShareLinksMetrics;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves YouTube videos through YouTube's oEmbed endpoint, which needs no API key or user authorization.
+ */
+@Slf4j
+@Singleton
+public class YouTubeLinkProvider implements LinkProvider {
+    private static final String YOUTUBE_WATCH_URL = "https://www.youtube.com/watch?v=";
+
+    private static final Set<LinkKind> LINK_KINDS = Collections.unmodifiableSet(EnumSet.of(LinkKind.YOUTUBE_VIDEO));
+
+    private final Gson gson = new Gson();
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private HttpPipeline httpPipeline;
+
+    @Inject
+    private ProviderEndpoints endpoints;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
+    @Override
+    public Set<LinkKind> GetLinkKinds() {
+        return LINK_KINDS;
+    }
+
+    @Override
+    public boolean IsEnabled() {
+        return config.enableYouTubeLinks();
+    }
+
+    @Override
+    public boolean CanPrefetch(LinkKind kind) {
+        // Nothing keeps oEmbed results, so a lookup ahead of time would only be repeated once the link is shared
+        return false;
+    }
+
+    @Override
+    public String GetLinkUrl(LinkKind kind, String id) {
+        return YOUTUBE_WATCH_URL + id;
+    }
+
+    @Override
+    public CompletableFuture<LinkMetadata> ResolveMetadata(LinkKind kind, String id, LinkPriority priority) {
+        String videoUrl = GetLinkUrl(kind, id);
+        HttpUrl url = HttpUrl.parse(endpoints.GetYouTubeOEmbedUrl()).newBuilder()
+                .addQueryParameter("url", videoUrl)
+                .addQueryParameter("format", "json")
+                .build();
+        Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        long start = metrics.StartTimer();
+        return httpPipeline.GetString(request)
+                .handle((json, e) -> {
+                    metrics.Record(ShareLinksMetrics.YOUTUBE_OEMBED, start);
+                    if (e != null) {
+                        log.warn("[External Plugin][Share Links] Error getting YouTube video for id=" + id, e);
+                        return null;
+                    }
+
+                    YouTubeOEmbed video = gson.fromJson(json, YouTubeOEmbed.class);
+                    if (video == null) {
+                        return null;
+                    }
+                    return new LinkMetadata(kind, id, video.title, video.author_name, videoUrl, video.thumbnail_url);
+                });
+    }
+}
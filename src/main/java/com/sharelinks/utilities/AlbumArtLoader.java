@@ -0,0 +1,175 @@
+package com.sharelinks.utilities;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Loads album art only for the rows that are in view. The panel reports the image URLs of its visible rows whenever
+ * they change; loads for rows that scrolled away before their turn are cancelled, so a flood of shares only costs
+ * metadata lookups. Loads that already started still finish, and their art lands in the {@link ImageCache}.
+ */
+@Slf4j
+@Singleton
+public class AlbumArtLoader {
+    private static final int LOADER_THREADS = 2;
+    private static final int MAX_REMEMBERED_FAILURES = 256;
+    private static final long FIRST_RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long MAX_RETRY_DELAY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final ImageCache imageCache;
+    private final ShareLinksMetrics metrics;
+
+    // Visible art that is not loading yet, top row first
+    private final Set<String> queuedUrls = new LinkedHashSet<>();
+    private final Set<String> loadingUrls = new HashSet<>();
+    // Art that could not be loaded is not retried on every scroll, only once it is in view after a growing delay
+    private final Map<String, FailedLoad> failedUrls = new LinkedHashMap<String, FailedLoad>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FailedLoad> eldest) {
+            return size() > MAX_REMEMBERED_FAILURES;
+        }
+    };
+
+    private ExecutorService executor;
+    private Consumer<String> listener;
+
+    @Inject
+    public AlbumArtLoader(ImageCache imageCache, ShareLinksMetrics metrics) {
+        this.imageCache = imageCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param listener called on the EDT with the image URL of art that finished loading
+     */
+    public synchronized void Start(Consumer<String> listener) {
+        if (executor != null) {
+            return;
+        }
+
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "share-links-album-art");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        threadPool.allowCoreThreadTimeOut(true);
+        executor = threadPool;
+        this.listener = listener;
+    }
+
+    public synchronized void Shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        listener = null;
+        queuedUrls.clear();
+        loadingUrls.clear();
+        failedUrls.clear();
+    }
+
+    /**
+     * Replaces the art that is wanted with the art of the rows now in view. Called on the EDT; does no I/O.
+     *
+     * @param imageUrls image URLs of the visible rows, top row first
+     */
+    public synchronized void SetVisible(Collection<String> imageUrls) {
+        long nowNanos = System.nanoTime();
+        Iterator<String> iterator = queuedUrls.iterator();
+        while (iterator.hasNext()) {
+            if (!imageUrls.contains(iterator.next())) {
+                iterator.remove();
+                metrics.Increment(ShareLinksMetrics.IMAGE_LOAD_CANCELLED);
+            }
+        }
+
+        for (String imageUrl : imageUrls) {
+            if (!loadingUrls.contains(imageUrl) && !IsBackingOff(imageUrl, nowNanos)
+                    && imageCache.GetCachedImage(imageUrl) == null) {
+                queuedUrls.add(imageUrl);
+            }
+        }
+        Pump();
+    }
+
+    /**
+     * @return how many visible rows are waiting for their art to start loading
+     */
+    public synchronized int GetQueuedCount() {
+        return queuedUrls.size();
+    }
+
+    private boolean IsBackingOff(String imageUrl, long nowNanos) {
+        FailedLoad failedLoad = failedUrls.get(imageUrl);
+        return failedLoad != null && nowNanos - failedLoad.retryNanos < 0;
+    }
+
+    private void Pump() {
+        while (executor != null && loadingUrls.size() < LOADER_THREADS && !queuedUrls.isEmpty()) {
+            Iterator<String> iterator = queuedUrls.iterator();
+            String imageUrl = iterator.next();
+            iterator.remove();
+            loadingUrls.add(imageUrl);
+            executor.execute(() -> Load(imageUrl));
+        }
+    }
+
+    private void Load(String imageUrl) {
+        ImageIcon icon = null;
+        long start = metrics.StartTimer();
+        try {
+            icon = imageCache.GetImage(imageUrl);
+        } catch (RuntimeException e) {
+            log.warn("[External Plugin][Share Links] Error loading album art for url=" + imageUrl, e);
+        }
+        metrics.Record(ShareLinksMetrics.IMAGE_LOAD, start);
+
+        Consumer<String> listener;
+        synchronized (this) {
+            loadingUrls.remove(imageUrl);
+            if (icon == null) {
+                // Each failure in a row doubles the delay, so art that stays broken is rarely asked for again
+                FailedLoad previous = failedUrls.get(imageUrl);
+                long delayNanos = previous != null
+                        ? Math.min(MAX_RETRY_DELAY_NANOS, previous.delayNanos * 2)
+                        : FIRST_RETRY_DELAY_NANOS;
+                failedUrls.put(imageUrl, new FailedLoad(System.nanoTime() + delayNanos, delayNanos));
+            } else {
+                failedUrls.remove(imageUrl);
+            }
+            listener = this.listener;
+            Pump();
+        }
+        if (icon != null && listener != null) {
+            SwingUtilities.invokeLater(() -> listener.accept(imageUrl));
+        }
+    }
+
+    private static class FailedLoad {
+        private final long retryNanos;
+        private final long delayNanos;
+
+        private FailedLoad(long retryNanos, long delayNanos) {
+            this.retryNanos = retryNanos;
+            this.delayNanos = delayNanos;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Singleton;
 import java.awt.*;
+import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.DataFlavor;
 import java.util.concurrent.TimeUnit;
 
@@ -26,6 +27,25 @@ public class ClipboardUtility {
         return clipboardString;
     }
 
+    /**
+     * Reads the clipboard without logging when it holds no text (e.g. an image or files), for callers that poll it.
+     *
+     * @return the text on the clipboard, or null if it holds none or could not be read
+     */
+    public String GetTextFromClipboardQuietly() {
+        try {
+            Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+            if (!clipboard.isDataFlavorAvailable(DataFlavor.stringFlavor)) {
+                return null;
+            }
+            return clipboard.getData(DataFlavor.stringFlavor).toString();
+        } catch (Exception e) {
+            // Another application may own the clipboard for a moment, so the next poll simply tries again
+            log.debug("[External Plugin][Share Links] Error reading user's clipboard.", e);
+            return null;
+        }
+    }
+
     public String GetStringStartingWithSubstringFromClipboard(String substring, int secondsToWait) throws InterruptedException {
         int elapsed = 0;
         do {
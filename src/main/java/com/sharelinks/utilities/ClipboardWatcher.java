@@ -0,0 +1,151 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkMatch;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.RecognizedLink;
+import com.sharelinks.providers.LinkProvider;
+import com.sharelinks.providers.LinkProviders;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.*;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.FlavorListener;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the system clipboard on a background thread and keeps the last link copied to it, already recognized, so
+ * that expanding "!Share" on the client thread never touches the clipboard, which can stall on X11 and Wayland while
+ * another application owns the selection. A newly copied link starts resolving right away, before it is shared.
+ * <p>
+ * Copying text over text does not change the clipboard's flavors on every platform, so the {@link FlavorListener}
+ * is backed by a slow poll.
+ */
+@Slf4j
+@Singleton
+public class ClipboardWatcher {
+    private static final int POLL_INTERVAL_MILLIS = 1000;
+
+    @Inject
+    private ClipboardUtility clipboardUtility;
+
+    @Inject
+    private LinkRecognizer linkRecognizer;
+
+    @Inject
+    private LinkProviders linkProviders;
+
+    @Inject
+    private LinkResolver linkResolver;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
+    // Only used on the watcher thread. The clipboard text is only remembered by length and hash, since it may be
+    // large or something the user would not want kept, such as a password
+    private final LinkMatch linkMatch = new LinkMatch();
+    private int lastClipboardLength = -1;
+    private int lastClipboardHash;
+
+    private volatile RecognizedLink lastLink;
+
+    private ScheduledExecutorService scheduler;
+    private Clipboard clipboard;
+    private FlavorListener flavorListener;
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-clipboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = executor;
+
+        try {
+            clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+            // Delivered on the EDT, so only hand off to the watcher thread
+            flavorListener = e -> executor.execute(this::ReadClipboard);
+            clipboard.addFlavorListener(flavorListener);
+        } catch (HeadlessException | SecurityException e) {
+            // Polling would only fail every second too, e.g. when running headless
+            log.warn("[External Plugin][Share Links] Clipboard is not available, !Share will not be expanded.");
+            clipboard = null;
+            return;
+        }
+
+        executor.scheduleWithFixedDelay(this::ReadClipboard, 0, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void Shutdown() {
+        if (clipboard != null) {
+            clipboard.removeFlavorListener(flavorListener);
+            clipboard = null;
+            flavorListener = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        lastLink = null;
+        lastClipboardLength = -1;
+    }
+
+    /**
+     * @return the link last copied to the clipboard, or null if the clipboard does not currently hold a link of an
+     * enabled provider. Safe to call from any thread; never touches the clipboard.
+     */
+    public RecognizedLink GetLastLink() {
+        return lastLink;
+    }
+
+    private void ReadClipboard() {
+        try {
+            long start = metrics.StartTimer();
+            String clipboardString = clipboardUtility.GetTextFromClipboardQuietly();
+            metrics.Record(ShareLinksMetrics.CLIPBOARD_READ, start);
+            if (clipboardString == null) {
+                clipboardString = "";
+            }
+            if (clipboardString.length() == lastClipboardLength && clipboardString.hashCode() == lastClipboardHash) {
+                return;
+            }
+            lastClipboardLength = clipboardString.length();
+            lastClipboardHash = clipboardString.hashCode();
+
+            if (!linkRecognizer.RecognizeLink(clipboardString, 0, linkMatch) || !linkProviders.IsEnabled(linkMatch.getKind())) {
+                lastLink = null;
+                return;
+            }
+
+            RecognizedLink link = new RecognizedLink(linkMatch.getKind(), linkMatch.getId(clipboardString), linkMatch.getLink(clipboardString));
+            lastLink = link;
+            Prefetch(link);
+        } catch (RuntimeException e) {
+            // An exception would cancel the poll
+            log.warn("[External Plugin][Share Links] Error watching user's clipboard.", e);
+        }
+    }
+
+    /**
+     * Resolves the link into its provider's cache so that the item is ready by the time the link is shared. Skipped
+     * for kinds whose results are not cached, and when resolving would ask the user for something, e.g. to log in,
+     * since merely copying a link must not open a browser.
+     */
+    private void Prefetch(RecognizedLink link) {
+        LinkProvider provider = linkProviders.Get(link.getKind());
+        if (provider == null || !provider.CanPrefetch(link.getKind())) {
+            return;
+        }
+
+        metrics.Increment(ShareLinksMetrics.CLIPBOARD_PREFETCH);
+        linkResolver.Resolve(link.getKind(), link.getId(), null, LocalDateTime.now(), LinkPriority.OWN);
+    }
+}
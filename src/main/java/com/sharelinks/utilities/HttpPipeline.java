@@ -0,0 +1,127 @@
+package com.sharelinks.utilities;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one path every provider, image and API request takes to the network. Requests are queued asynchronously with a
+ * global and a per-host concurrency limit, so a slow host (or a flood of shares) cannot tie up threads or starve other
+ * hosts, and they share the connection pool of the client's {@link OkHttpClient} so connections are reused.
+ */
+@Slf4j
+@Singleton
+public class HttpPipeline {
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    public interface ResponseReader<T> {
+        /**
+         * Reads a successful response. Runs on an HTTP thread; the response is closed afterwards.
+         */
+        T Read(Response response) throws IOException;
+    }
+
+    private final Dispatcher dispatcher;
+    private final OkHttpClient httpClient;
+
+    @Inject
+    public HttpPipeline(OkHttpClient okHttpClient) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        // Same shape as OkHttp's default executor, but with daemon threads that are easy to spot in a thread dump
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "share-links-http-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        // newBuilder() keeps the injected client's connection pool, interceptors and timeouts
+        httpClient = okHttpClient.newBuilder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    /**
+     * Queues a request without blocking the caller.
+     *
+     * @return a future completing with what reader read from the response, or exceptionally with an
+     * {@link HttpStatusException} for an unsuccessful response or an IOException if the request failed
+     */
+    public <T> CompletableFuture<T> Execute(Request request, ResponseReader<T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response closedResponse = response) {
+                    if (!closedResponse.isSuccessful()) {
+                        throw new HttpStatusException(request.url().toString(), closedResponse.code(), closedResponse.headers());
+                    }
+                    future.complete(reader.Read(closedResponse));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        // Cancelling the future cancels the call
+        future.whenComplete((value, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues a request and returns its body as a string.
+     */
+    public CompletableFuture<String> GetString(Request request) {
+        return Execute(request, response -> response.body().string());
+    }
+
+    /**
+     * Queues a request and returns its body as bytes.
+     */
+    public CompletableFuture<byte[]> GetBytes(Request request) {
+        return Execute(request, response -> response.body().bytes());
+    }
+
+    /**
+     * Cancels every queued and running request.
+     */
+    public void CancelAll() {
+        dispatcher.cancelAll();
+    }
+
+    public int GetQueuedCount() {
+        return dispatcher.queuedCallsCount();
+    }
+
+    public int GetRunningCount() {
+        return dispatcher.runningCallsCount();
+    }
+}
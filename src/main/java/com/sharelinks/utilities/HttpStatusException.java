@@ -0,0 +1,21 @@
+package com.sharelinks.utilities;
+
+import lombok.Getter;
+import okhttp3.Headers;
+
+import java.io.IOException;
+
+/**
+ * Thrown for an HTTP response that was received but was not successful.
+ */
+@Getter
+public class HttpStatusException extends IOException {
+    private final int code;
+    private final Headers headers;
+
+    public HttpStatusException(String url, int code, Headers headers) {
+        super("HTTP " + code + " for url=" + url);
+        this.code = code;
+        this.headers = headers;
+    }
+}
@@ -0,0 +1,320 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.ShareLinksConfig;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+
+import javax.imageio.ImageIO;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Two-tier cache of album art keyed by image URL, and the only holder of decoded art. Decoded icons are kept in memory
+ * under a byte budget counted from their rasters, dropping the least recently viewed first, and the raw image bytes are
+ * kept on disk so that dropped art (or a cold start) is reloaded from disk instead of the CDN. The disk tier is capped
+ * too, by deleting the least recently used files on start.
+ */
+@Slf4j
+@Singleton
+public class ImageCache {
+    private static final String IMAGE_DIR = "images";
+    private static final String IMAGE_KEY_PREFIX = IMAGE_DIR + "/";
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_ICON_SIZE = 64;
+    // Enough for every visible row, so that art in view never pushes out other art in view
+    private static final long MIN_BUDGET_BYTES = 32L * MAX_ICON_SIZE * MAX_ICON_SIZE * 4;
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private HttpPipeline httpPipeline;
+
+    @Inject
+    private KeyValueStore keyValueStore;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
+    // accessOrder = true makes iteration order least-recently-used first
+    private final LinkedHashMap<String, ImageIcon> icons = new LinkedHashMap<>(64, 0.75f, true);
+    private long iconBytes;
+
+    private final SingleFlight<String, ImageIcon> imageFlights = new SingleFlight<>();
+
+    private long memoryHitCount;
+    private long diskHitCount;
+    private long networkLoadCount;
+
+    /**
+     * Trims the disk tier down to its cap in the background, so that art shared over many sessions does not pile up.
+     */
+    public void Start() {
+        Thread thread = new Thread(this::TrimDisk, "share-links-image-sweep");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Deletes the least recently used image files, by modification time, until the disk tier is within its cap.
+     * Disk hits touch their file, so art that keeps being viewed is kept over art that is not.
+     *
+     * @return how many files were deleted
+     */
+    int TrimDisk() {
+        return TrimDisk(MAX_DISK_BYTES);
+    }
+
+    int TrimDisk(long maxBytes) {
+        File[] files = keyValueStore.GetFile(IMAGE_DIR).listFiles(File::isFile);
+        if (files == null) {
+            return 0;
+        }
+
+        // Read each file's time and size once, as they may change while sorting
+        List<DiskImage> images = new ArrayList<>(files.length);
+        long totalBytes = 0;
+        for (File file : files) {
+            DiskImage image = new DiskImage(file, file.lastModified(), file.length());
+            images.add(image);
+            totalBytes += image.bytes;
+        }
+        if (totalBytes <= maxBytes) {
+            return 0;
+        }
+
+        images.sort(Comparator.comparingLong(image -> image.lastModified));
+        int deleted = 0;
+        for (DiskImage image : images) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            if (image.file.delete()) {
+                totalBytes -= image.bytes;
+                deleted++;
+                metrics.Increment(ShareLinksMetrics.IMAGE_DISK_EVICTED);
+            }
+        }
+        log.debug("[External Plugin][Share Links] Deleted " + deleted + " cached images to stay within the disk cap.");
+        return deleted;
+    }
+
+    /**
+     * Returns the icon for an image URL, loading it from disk or the network if it is not in memory.
+     * Must not be called on the client thread or the EDT.
+     *
+     * @return the icon, or null if the image could not be loaded
+     */
+    public ImageIcon GetImage(String imageUrl) {
+        synchronized (this) {
+            ImageIcon icon = icons.get(imageUrl);
+            if (icon != null) {
+                memoryHitCount++;
+                return icon;
+            }
+        }
+
+        // Threads asking for the same art at the same time wait for one load instead of repeating it
+        return imageFlights.Execute(imageUrl, () -> CompletableFuture.completedFuture(LoadImage(imageUrl))).join();
+    }
+
+    /**
+     * @return the icon for an image URL if it is in memory, without loading it. Counts as a view, so art that is
+     * painted stays in memory over art that is not. Safe to call on the EDT.
+     */
+    public synchronized ImageIcon GetCachedImage(String imageUrl) {
+        return icons.get(imageUrl);
+    }
+
+    /**
+     * @return how many image loads joined an identical in-flight load instead of starting their own
+     */
+    public long GetSavedLoadCount() {
+        return imageFlights.GetSavedCount();
+    }
+
+    private ImageIcon LoadImage(String imageUrl) {
+        synchronized (this) {
+            // A load that just finished may have populated memory between the check and joining the flight
+            ImageIcon icon = icons.get(imageUrl);
+            if (icon != null) {
+                memoryHitCount++;
+                return icon;
+            }
+        }
+
+        String imageKey = GetImageKey(imageUrl);
+        byte[] bytes = keyValueStore.GetBytes(imageKey);
+        if (bytes != null) {
+            synchronized (this) {
+                diskHitCount++;
+            }
+            keyValueStore.GetFile(imageKey).setLastModified(System.currentTimeMillis());
+        } else {
+            long downloadStart = metrics.StartTimer();
+            bytes = DownloadImageBytes(imageUrl);
+            metrics.Record(ShareLinksMetrics.IMAGE_DOWNLOAD, downloadStart);
+            if (bytes == null) {
+                metrics.Increment(ShareLinksMetrics.IMAGE_DOWNLOAD_FAILED);
+                return null;
+            }
+            synchronized (this) {
+                networkLoadCount++;
+            }
+            keyValueStore.PutBytes(imageKey, bytes);
+        }
+
+        long decodeStart = metrics.StartTimer();
+        ImageIcon icon = DecodeImage(bytes);
+        metrics.Record(ShareLinksMetrics.IMAGE_DECODE, decodeStart);
+        if (icon != null) {
+            PutInMemory(imageUrl, icon);
+        }
+        return icon;
+    }
+
+    public synchronized long GetMemoryHitCount() {
+        return memoryHitCount;
+    }
+
+    public synchronized long GetDiskHitCount() {
+        return diskHitCount;
+    }
+
+    public synchronized long GetNetworkLoadCount() {
+        return networkLoadCount;
+    }
+
+    public synchronized long GetMemoryBytes() {
+        return iconBytes;
+    }
+
+    public long GetBudgetBytes() {
+        return Math.max(MIN_BUDGET_BYTES, config.albumArtMemoryBudgetKb() * 1024L);
+    }
+
+    /**
+     * Drops the least recently viewed art until memory is within the budget again, e.g. after the budget shrank.
+     */
+    public synchronized void TrimToBudget() {
+        long budgetBytes = GetBudgetBytes();
+        Iterator<Map.Entry<String, ImageIcon>> iterator = icons.entrySet().iterator();
+        while (iconBytes > budgetBytes && iterator.hasNext()) {
+            iconBytes -= GetIconBytes(iterator.next().getValue());
+            iterator.remove();
+            metrics.Increment(ShareLinksMetrics.IMAGE_EVICTED);
+        }
+    }
+
+    private synchronized void PutInMemory(String imageUrl, ImageIcon icon) {
+        ImageIcon previous = icons.put(imageUrl, icon);
+        if (previous != null) {
+            iconBytes -= GetIconBytes(previous);
+        }
+        iconBytes += GetIconBytes(icon);
+        TrimToBudget();
+    }
+
+    /**
+     * @return the bytes held by the icon's decoded raster, e.g. 3 per pixel for a JPEG decoded as BGR
+     */
+    private static long GetIconBytes(ImageIcon icon) {
+        Image image = icon.getImage();
+        if (image instanceof BufferedImage) {
+            DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+        return (long) icon.getIconWidth() * icon.getIconHeight() * 4;
+    }
+
+    private static ImageIcon DecodeImage(byte[] bytes) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            return image != null ? new ImageIcon(ScaleToIconSize(image)) : null;
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] Error decoding cached image.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Shrinks images larger than an icon (e.g. video thumbnails) so that memory holds only what is painted.
+     */
+    private static BufferedImage ScaleToIconSize(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= MAX_ICON_SIZE && height <= MAX_ICON_SIZE) {
+            return image;
+        }
+
+        double scale = Math.min((double) MAX_ICON_SIZE / width, (double) MAX_ICON_SIZE / height);
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage scaledImage = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaledImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
+        graphics.dispose();
+        return scaledImage;
+    }
+
+    private byte[] DownloadImageBytes(String imageUrl) {
+        Request request = new Request.Builder()
+                .url(imageUrl)
+                .build();
+
+        try {
+            // Callers already run on an album-art loader thread, so waiting here only holds up this one image
+            return httpPipeline.GetBytes(request).join();
+        } catch (Exception e) {
+            log.warn("[External Plugin][Share Links] Error getting image for url=" + imageUrl, e);
+            return null;
+        }
+    }
+
+    private static class DiskImage {
+        private final File file;
+        private final long lastModified;
+        private final long bytes;
+
+        private DiskImage(File file, long lastModified, long bytes) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+    }
+
+    static String GetImageKey(String imageUrl) {
+        return IMAGE_KEY_PREFIX + Sha1Hex(imageUrl);
+    }
+
+    private static String Sha1Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
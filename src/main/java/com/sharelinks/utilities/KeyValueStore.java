@@ -0,0 +1,300 @@
+package com.sharelinks.utilities;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small typed key-value store backed by one file per key in the share-links dir.
+ * <ul>
+ * <li>Values are encoded with a compact binary {@link Codec} behind a magic header, instead of Java serialization.</li>
+ * <li>Files are replaced by writing a temp file and renaming it, so a crash mid-write never corrupts a value.</li>
+ * <li>Writes happen behind the caller on a background thread, and rapid updates of one key coalesce into one write.</li>
+ * <li>Typed values are served from memory after the first load. Byte values (e.g. images) are not kept in memory.</li>
+ * </ul>
+ */
+@Slf4j
+@Singleton
+public class KeyValueStore {
+    private static final int MAGIC = 0x534C4B56; // "SLKV"
+    private static final int WRITE_BEHIND_DELAY_MILLIS = 1000;
+    private static final int SHUTDOWN_WAIT_MILLIS = 1000;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Object MISSING = new Object();
+
+    public interface Codec<T> {
+        void Write(DataOutputStream out, T value) throws IOException;
+
+        T Read(DataInputStream in) throws IOException;
+    }
+
+    public interface StreamWriter {
+        void Write(OutputStream out) throws IOException;
+    }
+
+    public static final Codec<byte[]> BYTES_CODEC = new Codec<byte[]>() {
+        @Override
+        public void Write(DataOutputStream out, byte[] value) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] Read(DataInputStream in) throws IOException {
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return value;
+        }
+    };
+
+    private final File directory;
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final Map<String, PendingWrite<?>> pendingWrites = new ConcurrentHashMap<>();
+    private final Object fileLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private boolean flushScheduled;
+
+    @Inject
+    public KeyValueStore() {
+        this(new File(DiskUtility.SHARE_LINKS_DIR));
+    }
+
+    /**
+     * Creates a store in a directory other than the share-links dir, e.g. for benchmarks and tests.
+     */
+    public KeyValueStore(File directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Shutdown() flushes right away, so a flush scheduled for later need not hold it up
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler = executor;
+
+        // Values put while the store was not running are written now
+        if (!pendingWrites.isEmpty()) {
+            flushScheduled = true;
+            scheduler.execute(this::Flush);
+        }
+    }
+
+    /**
+     * Writes out all pending values on the store thread and waits briefly for them to reach the disk.
+     */
+    public void Shutdown() {
+        ScheduledExecutorService stoppingScheduler;
+        synchronized (this) {
+            if (scheduler == null) {
+                return;
+            }
+            stoppingScheduler = scheduler;
+            scheduler.execute(this::Flush);
+            scheduler.shutdown();
+            scheduler = null;
+            flushScheduled = false;
+        }
+
+        // Not holding the lock, which Flush() takes
+        try {
+            if (!stoppingScheduler.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("[External Plugin][Share Links] Store did not finish writing to disk before shutting down.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the value for key, read from disk on first access and from memory afterwards, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T Get(String key, Codec<T> codec) {
+        Object value = values.get(key);
+        if (value == null) {
+            value = ReadPendingOrFile(key, codec);
+            values.putIfAbsent(key, value != null ? value : MISSING);
+            value = values.get(key);
+        }
+        return value == MISSING ? null : (T) value;
+    }
+
+    /**
+     * @return the value for key, read from disk (or a pending write) on every call and never kept in memory, for
+     * values whose owner already holds them, or null if there is none
+     */
+    public <T> T Read(String key, Codec<T> codec) {
+        return ReadPendingOrFile(key, codec);
+    }
+
+    /**
+     * Updates the value for key in memory right away and writes it to disk shortly after, or once the store is started.
+     * The value is written as it is when the write happens, so a live view may be passed, as long as its codec copies it safely.
+     */
+    public <T> void Put(String key, T value, Codec<T> codec) {
+        values.put(key, value);
+        ScheduleWrite(key, value, codec);
+    }
+
+    /**
+     * @return the bytes for key, or null if there are none. Never cached in memory.
+     */
+    public byte[] GetBytes(String key) {
+        return ReadPendingOrFile(key, BYTES_CODEC);
+    }
+
+    /**
+     * Writes the bytes for key to disk shortly after. Never cached in memory.
+     */
+    public void PutBytes(String key, byte[] value) {
+        ScheduleWrite(key, value, BYTES_CODEC);
+    }
+
+    /**
+     * @return the file backing key, for data such as append-only logs that is streamed rather than stored as a value
+     */
+    public File GetFile(String key) {
+        return new File(directory, key);
+    }
+
+    /**
+     * Replaces the file backing key with whatever writer produces, atomically. Must not be called on the EDT.
+     */
+    public void WriteAtomically(String key, StreamWriter writer) throws IOException {
+        File file = GetFile(key);
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        synchronized (fileLock) {
+            file.getParentFile().mkdirs();
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+                 BufferedOutputStream outputStream = new BufferedOutputStream(fileOutputStream)) {
+                writer.Write(outputStream);
+                outputStream.flush();
+                fileOutputStream.getFD().sync();
+            } catch (IOException | RuntimeException e) {
+                tempFile.delete();
+                throw e;
+            }
+
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Writes out all pending values on the calling thread.
+     */
+    public void Flush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+
+        List<String> keys = new ArrayList<>(pendingWrites.keySet());
+        for (String key : keys) {
+            PendingWrite<?> pendingWrite = pendingWrites.get(key);
+            if (pendingWrite != null) {
+                Write(key, pendingWrite);
+                // Only forget the write if no newer value arrived while it was being written
+                pendingWrites.remove(key, pendingWrite);
+            }
+        }
+    }
+
+    public static void WriteString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String ReadString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private <T> void ScheduleWrite(String key, T value, Codec<T> codec) {
+        pendingWrites.put(key, new PendingWrite<>(value, codec));
+
+        synchronized (this) {
+            if (scheduler == null) {
+                // Written once the store is started
+                return;
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(this::Flush, WRITE_BEHIND_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T ReadPendingOrFile(String key, Codec<T> codec) {
+        PendingWrite<?> pendingWrite = pendingWrites.get(key);
+        if (pendingWrite != null) {
+            return (T) pendingWrite.value;
+        }
+
+        File file = GetFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        synchronized (fileLock) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    log.warn("[External Plugin][Share Links] Ignoring file in an unknown format for key=" + key);
+                    return null;
+                }
+                return codec.Read(in);
+            } catch (IOException e) {
+                log.warn("[External Plugin][Share Links] When reading from disk, ran into IOException for key=" + key, e);
+                return null;
+            }
+        }
+    }
+
+    private <T> void Write(String key, PendingWrite<T> pendingWrite) {
+        try {
+            WriteAtomically(key, outputStream -> {
+                DataOutputStream out = new DataOutputStream(outputStream);
+                out.writeInt(MAGIC);
+                pendingWrite.codec.Write(out, pendingWrite.value);
+                out.flush();
+            });
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When writing to disk, ran into IOException for key=" + key, e);
+        }
+    }
+
+    private static class PendingWrite<T> {
+        private final T value;
+        private final Codec<T> codec;
+
+        private PendingWrite(T value, Codec<T> codec) {
+            this.value = value;
+            this.codec = codec;
+        }
+    }
+}
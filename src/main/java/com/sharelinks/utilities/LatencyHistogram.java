@@ -0,0 +1,75 @@
+package com.sharelinks.utilities;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two microsecond buckets. Recording is a few atomic adds, so it is cheap
+ * enough for the EDT and the client thread; percentiles are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+    // Bucket i holds samples below 2^i microseconds, the last bucket holds everything above ~1 hour
+    private static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void Record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    public long GetCount() {
+        return count.sum();
+    }
+
+    public long GetTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long GetMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, or 0 if nothing has been recorded
+     */
+    public long GetPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                // Never report more than the slowest sample actually seen
+                return Math.min((1L << i) * 1000, GetMaxNanos());
+            }
+        }
+        return GetMaxNanos();
+    }
+}
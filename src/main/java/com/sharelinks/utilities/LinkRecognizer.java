@@ -0,0 +1,183 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMatch;
+
+import javax.inject.Singleton;
+import java.util.Arrays;
+
+/**
+ * Recognizes "!Share &lt;link&gt;" messages for every registered provider URL form in a single pass over the message,
+ * without allocating. All registered prefixes live in one case-insensitive trie, so the cost of a message does not
+ * grow with the number of providers, and lines that are not "!Share" are rejected within a few comparisons.
+ */
+@Singleton
+public class LinkRecognizer {
+    private static final String SHARE_COMMAND = "!share";
+
+    private static final String[] WEB_SCHEMES = {"https://", "http://", ""};
+    private static final String[] YOUTUBE_WATCH_HOSTS = {"www.youtube.com", "youtube.com", "m.youtube.com", "music.youtube.com"};
+
+    private final Node root = new Node();
+
+    public LinkRecognizer() {
+        for (String scheme : WEB_SCHEMES) {
+            Register(scheme + "open.spotify.com/track/", LinkKind.SPOTIFY_TRACK);
+            Register(scheme + "open.spotify.com/album/", LinkKind.SPOTIFY_ALBUM);
+            Register(scheme + "open.spotify.com/playlist/", LinkKind.SPOTIFY_PLAYLIST);
+
+            for (String host : YOUTUBE_WATCH_HOSTS) {
+                Register(scheme + host + "/watch?v=", LinkKind.YOUTUBE_VIDEO);
+            }
+            Register(scheme + "youtu.be/", LinkKind.YOUTUBE_VIDEO);
+        }
+
+        Register("spotify:track:", LinkKind.SPOTIFY_TRACK);
+        Register("spotify:album:", LinkKind.SPOTIFY_ALBUM);
+        Register("spotify:playlist:", LinkKind.SPOTIFY_PLAYLIST);
+    }
+
+    /**
+     * Registers a URL prefix that is directly followed by the id of a link of the given kind.
+     * Registration is not thread-safe and must happen before the recognizer is used.
+     */
+    public void Register(String prefix, LinkKind kind) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.GetOrAddChild(ToLowerCase(prefix.charAt(i)));
+        }
+        node.kind = kind;
+    }
+
+    /**
+     * Recognizes a message of the form "!Share &lt;link&gt;" (case-insensitive, surrounding whitespace allowed).
+     *
+     * @param match receives the provider and the offsets of the link and its id
+     * @return whether the message shares a link of a registered form
+     */
+    public boolean Recognize(CharSequence message, LinkMatch match) {
+        int offset = MatchShareCommand(message);
+        if (offset < 0 || offset == message.length() || !IsWhitespace(message.charAt(offset))) {
+            return false;
+        }
+        return RecognizeLink(message, offset, match);
+    }
+
+    /**
+     * @return whether the message is exactly "!Share" (case-insensitive, surrounding whitespace allowed)
+     */
+    public boolean IsShareCommand(CharSequence message) {
+        int offset = MatchShareCommand(message);
+        return offset >= 0 && SkipWhitespace(message, offset) == message.length();
+    }
+
+    /**
+     * Recognizes a link starting at offset, after any whitespace.
+     *
+     * @param match receives the provider and the offsets of the link and its id
+     * @return whether the text holds a link of a registered form at offset
+     */
+    public boolean RecognizeLink(CharSequence text, int offset, LinkMatch match) {
+        int length = text.length();
+        int linkStart = SkipWhitespace(text, offset);
+
+        Node node = root;
+        int position = linkStart;
+        while (node.kind == null) {
+            if (position == length) {
+                return false;
+            }
+            node = node.GetChild(ToLowerCase(text.charAt(position++)));
+            if (node == null) {
+                return false;
+            }
+        }
+
+        int idStart = position;
+        while (position < length && IsIdChar(node.kind, text.charAt(position))) {
+            position++;
+        }
+        if (position == idStart) {
+            return false;
+        }
+        int idEnd = position;
+
+        while (position < length && !IsWhitespace(text.charAt(position))) {
+            position++;
+        }
+
+        match.setKind(node.kind);
+        match.setLinkStart(linkStart);
+        match.setLinkEnd(position);
+        match.setIdStart(idStart);
+        match.setIdEnd(idEnd);
+        return true;
+    }
+
+    /**
+     * @return the offset right after a leading "!Share", or -1 if the message does not start with one
+     */
+    private static int MatchShareCommand(CharSequence message) {
+        int offset = SkipWhitespace(message, 0);
+        if (message.length() - offset < SHARE_COMMAND.length()) {
+            return -1;
+        }
+        for (int i = 0; i < SHARE_COMMAND.length(); i++) {
+            if (ToLowerCase(message.charAt(offset + i)) != SHARE_COMMAND.charAt(i)) {
+                return -1;
+            }
+        }
+        return offset + SHARE_COMMAND.length();
+    }
+
+    private static int SkipWhitespace(CharSequence text, int offset) {
+        while (offset < text.length() && IsWhitespace(text.charAt(offset))) {
+            offset++;
+        }
+        return offset;
+    }
+
+    private static boolean IsWhitespace(char c) {
+        // OSRS chat uses non-breaking spaces between words
+        return c == ' ' || c == '\u00A0' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean IsIdChar(LinkKind kind, char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+            return true;
+        }
+        // YouTube ids are base64url, Spotify ids are base62
+        return kind == LinkKind.YOUTUBE_VIDEO && (c == '-' || c == '_');
+    }
+
+    private static char ToLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private LinkKind kind;
+
+        private Node GetChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node GetOrAddChild(char key) {
+            Node child = GetChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
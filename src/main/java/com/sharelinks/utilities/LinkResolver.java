@@ -0,0 +1,223 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMetadata;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.TrackPage;
+import com.sharelinks.providers.LinkProvider;
+import com.sharelinks.providers.LinkProviders;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves shared links of every {@link LinkProvider} into {@link LinkItem}s on a dedicated, bounded pool of daemon
+ * threads so that token reads and HTTP calls never run on the client thread or the Swing EDT.
+ */
+@Slf4j
+@Singleton
+public class LinkResolver {
+    private static final int RESOLVER_THREADS = 2;
+    private static final int RESOLVER_QUEUE_SIZE = 32;
+
+    @Inject
+    private LinkProviders linkProviders;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
+    private final SingleFlight<String, LinkMetadata> metadataFlights = new SingleFlight<>();
+
+    private ThreadPoolExecutor executor;
+
+    // Work that has already been admitted must not be dropped, so continuations fall back to the completing thread
+    // (a resolver or batcher thread, never the client thread or the EDT) when the pool is saturated
+    private final Executor continuationExecutor = runnable -> {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+        try {
+            if (executor != null) {
+                executor.execute(runnable);
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            // fall through
+        }
+        runnable.run();
+    };
+
+    public synchronized void Start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = new ThreadPoolExecutor(RESOLVER_THREADS, RESOLVER_THREADS,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(RESOLVER_QUEUE_SIZE),
+                new ResolverThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public synchronized void Shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Creates an item that can be shown immediately while the link is still being resolved.
+     */
+    public LinkItem CreatePlaceholderItem(LinkKind kind, String id, String sender, LocalDateTime timestamp) {
+        return new LinkItem(kind.itemType, "Loading...", "", GetLinkUrl(kind, id), null, timestamp, sender,
+                LinkItem.keyOf(kind, id), true);
+    }
+
+    /**
+     * Creates a plain item for a link whose metadata could not be resolved, so that the link is still usable.
+     */
+    public LinkItem CreatePlainItem(LinkKind kind, String id, String sender, LocalDateTime timestamp) {
+        return new LinkItem(kind.itemType, kind.displayName, id, GetLinkUrl(kind, id), null, timestamp, sender,
+                LinkItem.keyOf(kind, id), false);
+    }
+
+    /**
+     * Resolves a recognized link into a fully populated {@link LinkItem}. The returned future completes with null
+     * or exceptionally if the link could not be resolved, or if the resolver is saturated or not running.
+     *
+     * @param sender    the player who shared the link, or null if it has not been shared yet
+     * @param timestamp when the link was shared, which the item keeps however long resolving takes
+     */
+    public CompletableFuture<LinkItem> Resolve(LinkKind kind, String id, String sender, LocalDateTime timestamp,
+                                               LinkPriority priority) {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+
+        LinkProvider provider = linkProviders.Get(kind);
+        if (executor == null || provider == null) {
+            CompletableFuture<LinkItem> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException(provider == null
+                    ? "No provider for links of kind=" + kind
+                    : "Link resolver is not running"));
+            return future;
+        }
+
+        long start = metrics.StartTimer();
+        // Identical lookups that are already in flight (e.g. one link reposted by several players) share one result
+        String key = LinkItem.keyOf(kind, id);
+        return metadataFlights.Execute(key, () -> CompletableFuture
+                .supplyAsync(() -> provider.ResolveMetadata(kind, id, priority), executor)
+                .thenCompose(metadata -> metadata))
+                .thenApplyAsync(metadata -> metadata != null
+                        ? CreateItem(metadata, sender, timestamp, key)
+                        : null, continuationExecutor)
+                .whenComplete((item, e) -> {
+                    metrics.Record(ShareLinksMetrics.RESOLVE_LINK, start);
+                    if (item == null) {
+                        // The flight turns the pool rejecting the lookup into a failed result, so it is told apart here
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof RejectedExecutionException) {
+                            metrics.Increment(ShareLinksMetrics.RESOLVE_REJECTED);
+                            log.warn("[External Plugin][Share Links] Link resolver is saturated, dropping lookup for id=" + id);
+                        } else {
+                            metrics.Increment(ShareLinksMetrics.RESOLVE_FAILED);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Looks up one page of the tracks of an album or playlist, for its expanded item.
+     *
+     * @return a future completing with the page, or with null or exceptionally if it could not be loaded, or if the
+     * resolver is saturated or not running
+     */
+    public CompletableFuture<TrackPage> ResolveTrackPage(LinkKind kind, String id, int offset, int limit) {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+
+        LinkProvider provider = linkProviders.Get(kind);
+        if (executor == null || provider == null) {
+            CompletableFuture<TrackPage> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException(provider == null
+                    ? "No provider for links of kind=" + kind
+                    : "Link resolver is not running"));
+            return future;
+        }
+
+        try {
+            return CompletableFuture
+                    .supplyAsync(() -> provider.ResolveTrackPage(kind, id, offset, limit), executor)
+                    .thenCompose(page -> page);
+        } catch (RejectedExecutionException e) {
+            metrics.Increment(ShareLinksMetrics.RESOLVE_REJECTED);
+            CompletableFuture<TrackPage> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * @return how many resolutions joined an identical in-flight resolution instead of starting their own
+     */
+    public long GetSavedResolutionCount() {
+        return metadataFlights.GetSavedCount();
+    }
+
+    /**
+     * @return how many resolutions are waiting for a resolver thread
+     */
+    public synchronized int GetQueueDepth() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * @return how many distinct resolutions are in flight
+     */
+    public int GetInFlightCount() {
+        return metadataFlights.GetInFlightCount();
+    }
+
+    private String GetLinkUrl(LinkKind kind, String id) {
+        LinkProvider provider = linkProviders.Get(kind);
+        return provider != null ? provider.GetLinkUrl(kind, id) : id;
+    }
+
+    /**
+     * The thumbnail is not loaded here; the panel loads it once the item's row is scrolled into view.
+     */
+    private LinkItem CreateItem(LinkMetadata metadata, String sender, LocalDateTime timestamp, String key) {
+        return new LinkItem(metadata.getKind().itemType, metadata.getTitle(), metadata.getContent(),
+                metadata.getUrl(), metadata.getThumbnailUrl(), timestamp, sender, key, false);
+    }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "share-links-resolver-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
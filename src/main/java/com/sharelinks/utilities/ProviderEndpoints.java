@@ -0,0 +1,54 @@
+package com.sharelinks.utilities;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Base URLs of every remote service the plugin talks to. Bind a different instance to point the plugin at a local
+ * mock server, e.g. in tests.
+ */
+@Singleton
+public class ProviderEndpoints {
+    private final String spotifyApiBaseUrl;
+    private final String spotifyAccountsBaseUrl;
+    private final String youTubeOEmbedUrl;
+
+    @Inject
+    public ProviderEndpoints() {
+        this("https://api.spotify.com", "https://accounts.spotify.com", "https://www.youtube.com/oembed");
+    }
+
+    public ProviderEndpoints(String spotifyApiBaseUrl, String spotifyAccountsBaseUrl, String youTubeOEmbedUrl) {
+        this.spotifyApiBaseUrl = TrimTrailingSlash(spotifyApiBaseUrl);
+        this.spotifyAccountsBaseUrl = TrimTrailingSlash(spotifyAccountsBaseUrl);
+        this.youTubeOEmbedUrl = youTubeOEmbedUrl;
+    }
+
+    public String GetSpotifyTracksUrl() {
+        return spotifyApiBaseUrl + "/v1/tracks";
+    }
+
+    public String GetSpotifyAlbumUrl(String albumId) {
+        return spotifyApiBaseUrl + "/v1/albums/" + albumId;
+    }
+
+    public String GetSpotifyPlaylistUrl(String playlistId) {
+        return spotifyApiBaseUrl + "/v1/playlists/" + playlistId;
+    }
+
+    public String GetSpotifyAuthorizationUrl() {
+        return spotifyAccountsBaseUrl + "/authorize";
+    }
+
+    public String GetSpotifyTokenUrl() {
+        return spotifyAccountsBaseUrl + "/api/token";
+    }
+
+    public String GetYouTubeOEmbedUrl() {
+        return youTubeOEmbedUrl;
+    }
+
+    private static String TrimTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
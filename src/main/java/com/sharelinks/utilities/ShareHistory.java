@@ -0,0 +1,318 @@
+package com.sharelinks.utilities;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkHistoryEntry;
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import com.sharelinks.models.LinkMatch;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of shared links in the share-links dir. Appends are batched on a background thread, the log is
+ * compacted down to the configured retention once it grows past it (replacing the file atomically through the
+ * {@link KeyValueStore}), and startup only reads the most recent page.
+ */
+@Slf4j
+@Singleton
+public class ShareHistory {
+    private static final String HISTORY_KEY = "history.jsonl";
+    private static final int FLUSH_INTERVAL_SECONDS = 2;
+    private static final int COMPACTION_INTERVAL_MINUTES = 10;
+    private static final int MIN_COMPACTION_SLACK = 100;
+    private static final int READ_CHUNK_SIZE = 8192;
+    private static final int SHUTDOWN_WAIT_MILLIS = 1000;
+
+    private final Gson gson = new Gson();
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private KeyValueStore keyValueStore;
+
+    @Inject
+    private LinkRecognizer linkRecognizer;
+
+    private final ConcurrentLinkedQueue<LinkHistoryEntry> pendingEntries = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    // Only touched on the history thread
+    private long lineCount = -1;
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-history");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(this::Flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::CompactIfNeeded, 0, COMPACTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Writes out any pending entries on the history thread and waits briefly for it to finish, so that the entries
+     * are not lost on exit and a following Start() never runs alongside the old thread.
+     */
+    public synchronized void Shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+
+        ScheduledExecutorService stoppingScheduler = scheduler;
+        scheduler.execute(this::Flush);
+        scheduler.shutdown();
+        scheduler = null;
+
+        // The history thread never takes this lock, so holding it only keeps Start() waiting
+        try {
+            if (!stoppingScheduler.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("[External Plugin][Share Links] Share history did not finish writing to disk before shutting down.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues an item to be appended to the log. Cheap enough to call from any thread.
+     */
+    public void Append(LinkItem item) {
+        if (!config.saveLinkHistory()) {
+            return;
+        }
+        pendingEntries.add(CreateEntry(item));
+    }
+
+    /**
+     * Reads the most recent page of the log in the background. Icons are loaded later, as rows come into view.
+     *
+     * @return a future completing with up to pageSize items, newest first
+     */
+    public synchronized CompletableFuture<List<LinkItem>> LoadRecent(int pageSize) {
+        if (scheduler == null || !config.saveLinkHistory() || pageSize <= 0) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            List<LinkItem> items = new ArrayList<>();
+            for (String line : ReadLastLines(GetHistoryFile(), pageSize)) {
+                LinkItem item = CreateItem(line);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            Collections.reverse(items);
+            return items;
+        }, scheduler);
+    }
+
+    /**
+     * Appends pending entries in the background, e.g. before the log is exported.
+     *
+     * @return a future completing with the log file once every entry queued so far is in it
+     */
+    public synchronized CompletableFuture<File> FlushPending() {
+        if (scheduler == null) {
+            return CompletableFuture.completedFuture(GetHistoryFile());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            Flush();
+            return GetHistoryFile();
+        }, scheduler);
+    }
+
+    /**
+     * @return how many entries are waiting to be appended to the log
+     */
+    public int GetPendingCount() {
+        return pendingEntries.size();
+    }
+
+    private void Flush() {
+        if (pendingEntries.isEmpty()) {
+            return;
+        }
+
+        File file = GetHistoryFile();
+        int written = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            LinkHistoryEntry entry;
+            while ((entry = pendingEntries.poll()) != null) {
+                writer.write(gson.toJson(entry));
+                writer.write('\n');
+                written++;
+            }
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When appending to share history, ran into IOException for path=" + file, e);
+        }
+
+        if (lineCount >= 0) {
+            lineCount += written;
+        }
+        CompactIfNeeded();
+    }
+
+    private void CompactIfNeeded() {
+        File file = GetHistoryFile();
+        if (!file.exists()) {
+            lineCount = 0;
+            return;
+        }
+        if (lineCount < 0) {
+            lineCount = CountLines(file);
+        }
+
+        int retention = Math.max(1, config.historyRetention());
+        if (lineCount <= retention + Math.max(MIN_COMPACTION_SLACK, retention / 2)) {
+            return;
+        }
+
+        List<String> retainedLines = ReadLastLines(file, retention);
+        try {
+            keyValueStore.WriteAtomically(HISTORY_KEY, outputStream -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                for (String line : retainedLines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+            });
+            lineCount = retainedLines.size();
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When compacting share history, ran into IOException for path=" + file, e);
+        }
+    }
+
+    private static long CountLines(File file) {
+        long lines = 0;
+        byte[] buffer = new byte[READ_CHUNK_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When reading share history, ran into IOException for path=" + file, e);
+        }
+        return lines;
+    }
+
+    /**
+     * Reads the last count lines of a file by scanning backwards from its end, so the cost does not depend on how
+     * long the file is.
+     */
+    static List<String> ReadLastLines(File file, int count) {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long end = randomAccessFile.length();
+            long start = 0;
+            long position = end;
+            int newlines = 0;
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+
+            search:
+            while (position > 0) {
+                int length = (int) Math.min(chunk.length, position);
+                position -= length;
+                randomAccessFile.seek(position);
+                randomAccessFile.readFully(chunk, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    // The newline terminating the last line does not start a new one
+                    if (chunk[i] == '\n' && position + i != end - 1 && ++newlines == count) {
+                        start = position + i + 1;
+                        break search;
+                    }
+                }
+            }
+
+            byte[] tail = new byte[(int) (end - start)];
+            randomAccessFile.seek(start);
+            randomAccessFile.readFully(tail);
+
+            List<String> lines = new ArrayList<>();
+            for (String line : new String(tail, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When reading share history, ran into IOException for path=" + file, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static LinkHistoryEntry CreateEntry(LinkItem item) {
+        LinkHistoryEntry entry = new LinkHistoryEntry();
+        entry.type = item.getType().name();
+        entry.title = item.getTitle();
+        entry.content = item.getContent();
+        entry.url = item.getUrl();
+        entry.image_url = item.getImageUrl();
+        entry.sender = item.getSender();
+        entry.key = item.getKey();
+        entry.timestamp = item.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return entry;
+    }
+
+    private LinkItem CreateItem(String line) {
+        try {
+            LinkHistoryEntry entry = gson.fromJson(line, LinkHistoryEntry.class);
+            if (entry == null || entry.type == null || entry.url == null) {
+                log.warn("[External Plugin][Share Links] Skipping incomplete share history entry.");
+                return null;
+            }
+
+            LinkItemType type = LinkItemType.valueOf(entry.type);
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZoneId.systemDefault());
+            String key = entry.key != null ? entry.key : GetKey(entry.url);
+            return new LinkItem(type, entry.title, entry.content, entry.url, entry.image_url, timestamp, entry.sender, key, false);
+        } catch (JsonSyntaxException | IllegalArgumentException e) {
+            log.warn("[External Plugin][Share Links] Skipping unreadable share history entry.");
+            return null;
+        }
+    }
+
+    /**
+     * @return the key of an entry written before entries had keys, recognized from its url
+     */
+    private String GetKey(String url) {
+        LinkMatch match = new LinkMatch();
+        return linkRecognizer.RecognizeLink(url, 0, match) ? LinkItem.keyOf(match.getKind(), match.getId(url)) : url;
+    }
+
+    private File GetHistoryFile() {
+        return keyValueStore.GetFile(HISTORY_KEY);
+    }
+}
@@ -0,0 +1,261 @@
+package com.sharelinks.utilities;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.sharelinks.models.ExportFormat;
+import com.sharelinks.models.HistoryExportFilter;
+import com.sharelinks.models.LinkHistoryEntry;
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import com.sharelinks.models.LinkKind;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Exports the share history log to a file on a background thread. The log is streamed one line at a time into the
+ * export, so memory use does not grow with the history. The export is written next to its destination first and
+ * only moved into place once complete, so a failed export never leaves a partial file behind.
+ */
+@Slf4j
+@Singleton
+public class ShareHistoryExporter {
+    private static final int PROGRESS_INTERVAL_LINES = 1000;
+    private static final String PART_SUFFIX = ".part";
+    private static final String CSV_HEADER = "timestamp,provider,kind,title,content,sender,url";
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final ShareHistory shareHistory;
+    private final ShareLinksMetrics metrics;
+    private final Gson gson = new Gson();
+
+    private ExecutorService executor;
+
+    @Inject
+    public ShareHistoryExporter(ShareHistory shareHistory, ShareLinksMetrics metrics) {
+        this.shareHistory = shareHistory;
+        this.metrics = metrics;
+    }
+
+    public synchronized void Start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "share-links-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the export thread, abandoning an export that is still running.
+     */
+    public synchronized void Shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Exports the entries matching the filter, oldest first, including entries shared moments ago.
+     *
+     * @param progress called on the export thread with the fraction of the log read so far, from 0 to 1
+     * @return a future completing with how many entries were exported, or exceptionally if the export failed
+     */
+    public synchronized CompletableFuture<Integer> Export(File destination, ExportFormat format,
+                                                         HistoryExportFilter filter, DoubleConsumer progress) {
+        if (executor == null) {
+            CompletableFuture<Integer> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("Exporter is not started"));
+            return failed;
+        }
+
+        ExecutorService executor = this.executor;
+        return shareHistory.FlushPending().thenApplyAsync(historyFile -> {
+            long start = metrics.StartTimer();
+            try {
+                int exported = WriteExport(historyFile, destination, format, filter, progress);
+                metrics.Record(ShareLinksMetrics.HISTORY_EXPORT, start);
+                return exported;
+            } catch (IOException e) {
+                metrics.Increment(ShareLinksMetrics.HISTORY_EXPORT_FAILED);
+                log.warn("[External Plugin][Share Links] When exporting share history, ran into IOException for path=" + destination, e);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private int WriteExport(File historyFile, File destination, ExportFormat format, HistoryExportFilter filter,
+                            DoubleConsumer progress) throws IOException {
+        File partFile = new File(destination.getPath() + PART_SUFFIX);
+        int exported = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partFile), StandardCharsets.UTF_8))) {
+            WriteHeader(writer, format);
+            if (historyFile.exists()) {
+                exported = ExportEntries(historyFile, writer, format, filter, progress);
+            }
+        } catch (IOException e) {
+            partFile.delete();
+            throw e;
+        }
+
+        Files.move(partFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        progress.accept(1);
+        return exported;
+    }
+
+    private int ExportEntries(File historyFile, Writer writer, ExportFormat format, HistoryExportFilter filter,
+                              DoubleConsumer progress) throws IOException {
+        int exported = 0;
+        int lines = 0;
+        try (FileInputStream inputStream = new FileInputStream(historyFile);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            // Compaction replaces the log by renaming, so the open file keeps its length while it is read
+            double length = Math.max(1, inputStream.getChannel().size());
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Export was abandoned");
+                }
+                if (++lines % PROGRESS_INTERVAL_LINES == 0) {
+                    // Runs ahead of the line by at most what the reader buffered
+                    progress.accept(Math.min(1, inputStream.getChannel().position() / length));
+                }
+
+                LinkHistoryEntry entry = ReadEntry(line);
+                if (entry != null && filter.matches(entry)) {
+                    WriteEntry(writer, format, line, entry);
+                    exported++;
+                }
+            }
+        }
+        return exported;
+    }
+
+    private LinkHistoryEntry ReadEntry(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try {
+            LinkHistoryEntry entry = gson.fromJson(line, LinkHistoryEntry.class);
+            return entry != null && entry.url != null ? entry : null;
+        } catch (JsonSyntaxException e) {
+            return null;
+        }
+    }
+
+    private static void WriteHeader(Writer writer, ExportFormat format) throws IOException {
+        switch (format) {
+            case CSV:
+                writer.write(CSV_HEADER);
+                writer.write("\r\n");
+                break;
+            case M3U:
+                writer.write("#EXTM3U\n");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void WriteEntry(Writer writer, ExportFormat format, String line, LinkHistoryEntry entry) throws IOException {
+        LinkKind kind = LinkItem.kindOf(entry.key);
+        switch (format) {
+            case JSON_LINES:
+                // The log is already JSON Lines, so the entry is copied as it was stored
+                writer.write(line);
+                writer.write('\n');
+                break;
+            case CSV:
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZoneId.systemDefault());
+                writer.write(timestamp.truncatedTo(ChronoUnit.SECONDS).format(TIMESTAMP_FORMATTER));
+                writer.write(',');
+                WriteCsvField(writer, GetProviderName(entry.type));
+                writer.write(',');
+                WriteCsvField(writer, kind != null ? kind.displayName : null);
+                writer.write(',');
+                WriteCsvField(writer, entry.title);
+                writer.write(',');
+                WriteCsvField(writer, entry.content);
+                writer.write(',');
+                WriteCsvField(writer, entry.sender);
+                writer.write(',');
+                WriteCsvField(writer, entry.url);
+                writer.write("\r\n");
+                break;
+            case M3U:
+                writer.write("#EXTINF:-1,");
+                writer.write(GetPlaylistTitle(entry).replace('\n', ' ').replace('\r', ' '));
+                writer.write('\n');
+                writer.write(GetPlaylistLocation(kind, entry));
+                writer.write('\n');
+                break;
+        }
+    }
+
+    /**
+     * Writes a field quoted as RFC 4180 asks for. Fields that a spreadsheet would run as a formula are prefixed with
+     * a quote, since titles and senders come from other players.
+     */
+    private static void WriteCsvField(Writer writer, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    private static String GetProviderName(String type) {
+        try {
+            return LinkItemType.valueOf(type).value;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return type;
+        }
+    }
+
+    private static String GetPlaylistTitle(LinkHistoryEntry entry) {
+        if (entry.title == null || entry.title.isEmpty()) {
+            return entry.url;
+        }
+        return entry.content == null || entry.content.isEmpty() ? entry.title : entry.content + " - " + entry.title;
+    }
+
+    /**
+     * @return the Spotify URI of a Spotify link, e.g. "spotify:track:4uLU6hMCjMI75M1A2tKUQC", or else its url
+     */
+    private static String GetPlaylistLocation(LinkKind kind, LinkHistoryEntry entry) {
+        if (kind == null || kind.itemType != LinkItemType.SPOTIFY_LINK) {
+            return entry.url;
+        }
+        String type = kind.name().substring(kind.name().indexOf('_') + 1).toLowerCase();
+        return "spotify:" + type + ":" + LinkItem.idOf(entry.key);
+    }
+}
@@ -0,0 +1,285 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.PendingShare;
+import com.sharelinks.models.ShareOverflowPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded queue between chat and resolution, so that no chat rate can make the plugin hold or do more than a fixed
+ * amount of work.
+ * <ul>
+ * <li>Each other player may only share so many links per minute; the user's own shares are never limited.</li>
+ * <li>At most maxPendingShares shares wait, and the configured {@link ShareOverflowPolicy} decides which one is
+ * shed when the queue is full.</li>
+ * <li>Waiting shares are handed out most urgent {@link LinkPriority} first, a few per task on the handler's
+ * executor, and only while fewer than MAX_IN_FLIGHT handed out shares are still resolving.</li>
+ * </ul>
+ * Offering a share is O(1) and never blocks, so it is safe on the client thread.
+ */
+@Slf4j
+@Singleton
+public class ShareIngestQueue {
+    // Well below what the resolver's pool will queue, so that admitted shares are never turned down there
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final int MAX_SHARES_PER_TASK = 8;
+    private static final int MAX_TRACKED_SENDERS = 256;
+    // Each repeat is shown as its own row, so a flood of one link must not pile up rows to add in one go
+    static final int MAX_REPEATS_PER_SHARE = 8;
+
+    private final ShareLinksConfig config;
+    private final ShareLinksMetrics metrics;
+
+    private final Map<LinkPriority, ArrayDeque<PendingShare>> queues = new EnumMap<>(LinkPriority.class);
+    // Link key -> its most recently queued share that is still waiting, which repeats of the link are folded into
+    private final Map<String, PendingShare> latestWaitingShares = new HashMap<>();
+    // Least recently sharing players are forgotten first, which at worst resets their budget
+    private final Map<String, SenderBudget> senderBudgets = new LinkedHashMap<String, SenderBudget>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SenderBudget> eldest) {
+            return size() > MAX_TRACKED_SENDERS;
+        }
+    };
+    private int size;
+    private int inFlight;
+    private boolean taskScheduled;
+
+    private Executor executor;
+    private Function<PendingShare, CompletionStage<?>> handler;
+
+    @Inject
+    public ShareIngestQueue(ShareLinksConfig config, ShareLinksMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        for (LinkPriority priority : LinkPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * @param executor runs the handler, e.g. on the EDT
+     * @param handler  shows and resolves a share, completing once the share no longer needs the resolver
+     */
+    public synchronized void Start(Executor executor, Function<PendingShare, CompletionStage<?>> handler) {
+        this.executor = executor;
+        this.handler = handler;
+        ScheduleTask();
+    }
+
+    public synchronized void Shutdown() {
+        executor = null;
+        handler = null;
+        for (ArrayDeque<PendingShare> queue : queues.values()) {
+            queue.clear();
+        }
+        latestWaitingShares.clear();
+        senderBudgets.clear();
+        size = 0;
+        inFlight = 0;
+        taskScheduled = false;
+    }
+
+    /**
+     * @return whether the share will be shown, either queued or folded into a waiting share of the same link, rather
+     * than shed by the sender's rate limit or the overflow policy
+     */
+    public boolean Offer(PendingShare share) {
+        return Offer(share, System.nanoTime());
+    }
+
+    synchronized boolean Offer(PendingShare share, long nowNanos) {
+        if (share.getPriority() != LinkPriority.OWN && !TakeSenderPermit(share.getSender(), nowNanos)) {
+            metrics.Increment(ShareLinksMetrics.INGEST_RATE_LIMITED);
+            return false;
+        }
+
+        if (size >= Math.max(1, config.maxPendingShares())) {
+            PendingShare waitingShare = latestWaitingShares.get(share.getKey());
+            if (config.shareOverflowPolicy() == ShareOverflowPolicy.COLLAPSE_REPEATS && waitingShare != null) {
+                return CollapseInto(waitingShare, share);
+            }
+            if (!MakeRoom(share)) {
+                return false;
+            }
+        }
+
+        queues.get(share.getPriority()).addLast(share);
+        latestWaitingShares.put(share.getKey(), share);
+        size++;
+        ScheduleTask();
+        return true;
+    }
+
+    /**
+     * @return how many shares are waiting to be handed out
+     */
+    public synchronized int GetQueuedCount() {
+        return size;
+    }
+
+    /**
+     * @return how many handed out shares are still resolving
+     */
+    public synchronized int GetInFlightCount() {
+        return inFlight;
+    }
+
+    /**
+     * @return whether the new share may be queued after shedding a waiting one
+     */
+    private boolean MakeRoom(PendingShare share) {
+        switch (config.shareOverflowPolicy()) {
+            case DROP_NEWEST:
+                metrics.Increment(ShareLinksMetrics.INGEST_DROPPED);
+                return false;
+            case DROP_OLDEST:
+            case COLLAPSE_REPEATS:
+            default:
+                return DropOldest(share);
+        }
+    }
+
+    /**
+     * Sheds the oldest waiting share of the least urgent priority, unless every waiting share is more urgent than the
+     * new one.
+     *
+     * @return whether room was made for the new share
+     */
+    private boolean DropOldest(PendingShare share) {
+        metrics.Increment(ShareLinksMetrics.INGEST_DROPPED);
+        LinkPriority[] priorities = LinkPriority.values();
+        for (int i = priorities.length - 1; i >= 0 && priorities[i].compareTo(share.getPriority()) >= 0; i--) {
+            ArrayDeque<PendingShare> queue = queues.get(priorities[i]);
+            if (!queue.isEmpty()) {
+                Forget(queue.pollFirst());
+                return true;
+            }
+        }
+        // Everything waiting is more urgent than the new share
+        return false;
+    }
+
+    /**
+     * Records the share as a repeat of a waiting share of the same link, so that it is shown once that one resolves
+     * without taking a place in the queue. Repeats beyond MAX_REPEATS_PER_SHARE are shed.
+     *
+     * @return whether the share was recorded rather than shed
+     */
+    private boolean CollapseInto(PendingShare waitingShare, PendingShare share) {
+        if (waitingShare.getRepeats().size() >= MAX_REPEATS_PER_SHARE) {
+            metrics.Increment(ShareLinksMetrics.INGEST_DROPPED);
+            return false;
+        }
+        waitingShare.getRepeats().add(share);
+        metrics.Increment(ShareLinksMetrics.INGEST_COLLAPSED);
+        return true;
+    }
+
+    private PendingShare Poll() {
+        for (ArrayDeque<PendingShare> queue : queues.values()) {
+            PendingShare share = queue.pollFirst();
+            if (share != null) {
+                Forget(share);
+                return share;
+            }
+        }
+        return null;
+    }
+
+    private void Forget(PendingShare share) {
+        latestWaitingShares.remove(share.getKey(), share);
+        size--;
+    }
+
+    private boolean TakeSenderPermit(String sender, long nowNanos) {
+        int perMinute = config.sharesPerPlayerPerMinute();
+        if (perMinute <= 0) {
+            return true;
+        }
+
+        String senderKey = sender != null ? sender : "";
+        SenderBudget budget = senderBudgets.get(senderKey);
+        if (budget == null) {
+            budget = new SenderBudget(perMinute, nowNanos);
+            senderBudgets.put(senderKey, budget);
+        }
+
+        // Refills continuously, up to a minute's worth
+        double elapsedMinutes = (nowNanos - budget.refilledNanos) / (double) TimeUnit.MINUTES.toNanos(1);
+        budget.permits = Math.min(perMinute, budget.permits + elapsedMinutes * perMinute);
+        budget.refilledNanos = nowNanos;
+        if (budget.permits < 1) {
+            return false;
+        }
+        budget.permits--;
+        return true;
+    }
+
+    private void ScheduleTask() {
+        if (!taskScheduled && executor != null && size > 0 && inFlight < MAX_IN_FLIGHT) {
+            taskScheduled = true;
+            executor.execute(this::HandOut);
+        }
+    }
+
+    private void HandOut() {
+        for (int i = 0; i < MAX_SHARES_PER_TASK; i++) {
+            PendingShare share;
+            Function<PendingShare, CompletionStage<?>> handler;
+            synchronized (this) {
+                handler = this.handler;
+                share = handler != null && inFlight < MAX_IN_FLIGHT ? Poll() : null;
+                if (share == null) {
+                    taskScheduled = false;
+                    return;
+                }
+                inFlight++;
+            }
+
+            CompletionStage<?> done;
+            try {
+                done = handler.apply(share);
+            } catch (RuntimeException e) {
+                log.warn("[External Plugin][Share Links] Error showing shared link for id=" + share.getId(), e);
+                done = CompletableFuture.completedFuture(null);
+            }
+            done.whenComplete((result, e) -> OnDone());
+        }
+
+        synchronized (this) {
+            taskScheduled = false;
+            ScheduleTask();
+        }
+    }
+
+    private synchronized void OnDone() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        ScheduleTask();
+    }
+
+    private static class SenderBudget {
+        private double permits;
+        private long refilledNanos;
+
+        private SenderBudget(double permits, long refilledNanos) {
+            this.permits = permits;
+            this.refilledNanos = refilledNanos;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.sharelinks.utilities;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process registry of counters, latency histograms and gauges (e.g. queue depths) for each stage of turning a
+ * shared link into a panel item, so that a slow share can be traced to the token, the track call, the album art or
+ * Swing. Recording never blocks and is safe from any thread.
+ */
+@Slf4j
+@Singleton
+public class ShareLinksMetrics {
+    public static final String TOKEN_LOAD = "token.load";
+    public static final String TOKEN_REFRESH = "token.refresh";
+    public static final String TOKEN_AUTHORIZE = "token.authorize";
+    public static final String SPOTIFY_TRACKS = "spotify.tracks";
+    public static final String SPOTIFY_COLLECTION = "spotify.collection";
+    public static final String SPOTIFY_PAGE = "spotify.page";
+    public static final String SPOTIFY_DECODE = "spotify.decode";
+    public static final String SPOTIFY_QUEUE_WAIT = "spotify.queue_wait";
+    public static final String YOUTUBE_OEMBED = "youtube.oembed";
+    public static final String IMAGE_LOAD = "image.load";
+    public static final String IMAGE_DOWNLOAD = "image.download";
+    public static final String IMAGE_DECODE = "image.decode";
+    public static final String RESOLVE_LINK = "resolve.link";
+    public static final String PANEL_FLUSH = "panel.flush";
+    public static final String PANEL_RESTORE = "panel.restore";
+    public static final String PANEL_SEARCH = "panel.search";
+    public static final String HISTORY_EXPORT = "history.export";
+    public static final String EDT = "edt";
+    public static final String CLIPBOARD_READ = "clipboard.read";
+
+    public static final String RESOLVE_FAILED = "resolve.failed";
+    public static final String RESOLVE_REJECTED = "resolve.rejected";
+    public static final String SPOTIFY_TRACKS_FAILED = "spotify.tracks.failed";
+    public static final String SPOTIFY_COLLECTION_FAILED = "spotify.collection.failed";
+    public static final String SPOTIFY_PAGE_FAILED = "spotify.page.failed";
+    public static final String SPOTIFY_THROTTLED = "spotify.throttled";
+    public static final String SPOTIFY_RETRIES = "spotify.retries";
+    public static final String IMAGE_DOWNLOAD_FAILED = "image.download.failed";
+    public static final String IMAGE_LOAD_CANCELLED = "image.load.cancelled";
+    public static final String IMAGE_EVICTED = "image.evicted";
+    public static final String IMAGE_DISK_EVICTED = "image.disk.evicted";
+    public static final String CLIPBOARD_PREFETCH = "clipboard.prefetch";
+    public static final String INGEST_RATE_LIMITED = "ingest.rate_limited";
+    public static final String INGEST_DROPPED = "ingest.dropped";
+    public static final String INGEST_COLLAPSED = "ingest.collapsed";
+    public static final String PANEL_FLUSH_ITEMS = "panel.flush.items";
+    public static final String HISTORY_EXPORT_FAILED = "history.export.failed";
+
+    private static final String DUMP_FILE_PREFIX = "metrics-";
+    private static final DateTimeFormatter DUMP_FILE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public void Increment(String name) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    public void Add(String name, long amount) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * @return a start time to pass to Record()
+     */
+    public long StartTimer() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since startNanos (from StartTimer()) for a stage.
+     */
+    public void Record(String name, long startNanos) {
+        GetHistogram(name).Record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the time elapsed since startNanos for a stage that runs on the EDT, and adds it to the total EDT time.
+     */
+    public void RecordEdt(String name, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        GetHistogram(name).Record(nanos);
+        GetHistogram(EDT).Record(nanos);
+    }
+
+    /**
+     * Registers a value that is read whenever metrics are shown, replacing any gauge of the same name.
+     */
+    public void RegisterGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public LatencyHistogram GetHistogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public long GetCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * @return a plain text snapshot of every metric, sorted by name
+     */
+    public String Format() {
+        StringBuilder text = new StringBuilder();
+
+        text.append(String.format("%-16s %6s %8s %8s %8s %8s%n", "latency (ms)", "count", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            text.append(String.format("%-16s %6d %8.1f %8.1f %8.1f %8.1f%n",
+                    entry.getKey(),
+                    histogram.GetCount(),
+                    ToMillis(histogram.GetPercentileNanos(50)),
+                    ToMillis(histogram.GetPercentileNanos(90)),
+                    ToMillis(histogram.GetPercentileNanos(99)),
+                    ToMillis(histogram.GetMaxNanos())));
+        }
+        LatencyHistogram edt = histograms.get(EDT);
+        if (edt != null) {
+            text.append(String.format("%-16s %6s %8.1f%n", "edt total (ms)", "", ToMillis(edt.GetTotalNanos())));
+        }
+
+        text.append(String.format("%n%-24s %10s%n", "counter", "value"));
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            text.append(String.format("%-24s %10d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            long value;
+            try {
+                value = entry.getValue().getAsLong();
+            } catch (RuntimeException e) {
+                value = -1;
+            }
+            text.append(String.format("%-24s %10d%n", entry.getKey(), value));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes a snapshot of every metric to a new file in the share-links dir. Must not be called on the EDT.
+     *
+     * @return the file written, or null if it could not be written
+     */
+    public File Dump() {
+        File file = new File(DiskUtility.SHARE_LINKS_DIR, DUMP_FILE_PREFIX + LocalDateTime.now().format(DUMP_FILE_FORMATTER) + ".txt");
+        try {
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), Format().getBytes(StandardCharsets.UTF_8));
+            return file;
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] When dumping metrics, ran into IOException for path=" + file, e);
+            return null;
+        }
+    }
+
+    private static double ToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
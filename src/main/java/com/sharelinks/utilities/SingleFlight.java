@@ -0,0 +1,68 @@
+package com.sharelinks.utilities;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent computations for the same key into one shared computation whose result every caller receives.
+ * A key is only shared while its computation is in flight; once it completes, the next call starts a new one.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong savedCount = new AtomicLong();
+
+    /**
+     * Joins the in-flight computation for key, or starts a new one with supplier. The supplier runs on the calling
+     * thread, so a supplier that blocks makes this call block for the first caller only.
+     */
+    public CompletableFuture<V> Execute(K key, Supplier<CompletableFuture<V>> supplier) {
+        callCount.incrementAndGet();
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            savedCount.incrementAndGet();
+            return existing;
+        }
+
+        try {
+            supplier.get().whenComplete((value, e) ->
+            {
+                inFlight.remove(key, flight);
+                if (e != null) {
+                    flight.completeExceptionally(e);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight;
+    }
+
+    /**
+     * @return how many calls were made in total
+     */
+    public long GetCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * @return how many calls joined an in-flight computation instead of starting their own
+     */
+    public long GetSavedCount() {
+        return savedCount.get();
+    }
+
+    public int GetInFlightCount() {
+        return inFlight.size();
+    }
+}
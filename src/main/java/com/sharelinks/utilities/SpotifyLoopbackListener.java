@@ -0,0 +1,134 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.spotify.SpotifyRedirectUri;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One-shot HTTP listener on an ephemeral loopback port that receives the Spotify authorization redirect directly,
+ * so the user does not have to copy the redirect URL and no thread waits on the clipboard.
+ */
+@Slf4j
+@Singleton
+public class SpotifyLoopbackListener {
+    private static final String LOOPBACK_HOST = "127.0.0.1";
+    private static final String CALLBACK_PATH = "/callback";
+    private static final String SUCCESS_PAGE = "<html><body><h3>Share Links is now connected to Spotify.</h3>You can close this tab.</body></html>";
+    private static final String ERROR_PAGE = "<html><body><h3>Share Links could not connect to Spotify.</h3>You can close this tab.</body></html>";
+    private static final String STATE_MISMATCH_PAGE = "<html><body><h3>This login link is not the one Share Links is waiting for.</h3></body></html>";
+
+    /**
+     * A listener waiting for a single redirect.
+     */
+    @Getter
+    public static class Login {
+        private final String redirectUri;
+        private final CompletableFuture<SpotifyRedirectUri> redirect;
+
+        private Login(String redirectUri, CompletableFuture<SpotifyRedirectUri> redirect) {
+            this.redirectUri = redirectUri;
+            this.redirect = redirect;
+        }
+    }
+
+    /**
+     * Starts listening for the redirect of one authorization request. Redirects carrying a different state are
+     * rejected and the listener keeps waiting. The listener stops once a redirect is accepted or the timeout passes.
+     *
+     * @return the login, whose future completes with the accepted redirect (or exceptionally on timeout), or null if
+     * no loopback port could be opened
+     */
+    public Login Listen(String expectedState, int timeoutSeconds) {
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(LOOPBACK_HOST, 0), 0);
+        } catch (IOException e) {
+            log.warn("[External Plugin][Share Links] Could not open a loopback port for the Spotify login.", e);
+            return null;
+        }
+
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-spotify-login");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<SpotifyRedirectUri> redirect = new CompletableFuture<>();
+
+        server.setExecutor(executor);
+        server.createContext(CALLBACK_PATH, exchange -> {
+            try {
+                SpotifyRedirectUri redirectUri = ParseQuery(exchange.getRequestURI().getRawQuery());
+                if (!expectedState.equals(redirectUri.state)) {
+                    Respond(exchange, 400, STATE_MISMATCH_PAGE);
+                    return;
+                }
+
+                Respond(exchange, redirectUri.error.isEmpty() ? 200 : 400, redirectUri.error.isEmpty() ? SUCCESS_PAGE : ERROR_PAGE);
+                redirect.complete(redirectUri);
+            } finally {
+                exchange.close();
+            }
+        });
+
+        executor.schedule(() -> redirect.completeExceptionally(new TimeoutException("No Spotify login within " + timeoutSeconds + "s")),
+                timeoutSeconds, TimeUnit.SECONDS);
+        // Stop after the response has been written, on the listener's own thread
+        redirect.whenComplete((value, e) -> executor.execute(() -> {
+            server.stop(0);
+            executor.shutdownNow();
+        }));
+
+        server.start();
+        return new Login("http://" + LOOPBACK_HOST + ":" + server.getAddress().getPort() + CALLBACK_PATH, redirect);
+    }
+
+    /**
+     * Parses the query of an authorization redirect, in any parameter order.
+     */
+    public static SpotifyRedirectUri ParseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                int separator = param.indexOf('=');
+                if (separator > 0) {
+                    params.put(Decode(param.substring(0, separator)), Decode(param.substring(separator + 1)));
+                }
+            }
+        }
+        return new SpotifyRedirectUri(params.getOrDefault("code", ""), params.getOrDefault("error", ""), params.getOrDefault("state", ""));
+    }
+
+    private static String Decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void Respond(HttpExchange exchange, int code, String page) throws IOException {
+        byte[] body = page.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
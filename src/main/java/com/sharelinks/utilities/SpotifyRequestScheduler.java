@@ -0,0 +1,310 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkPriority;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests to the Spotify Web API in priority order without tripping its rate limit.
+ * <ul>
+ * <li>A client-side token bucket spaces requests out, and at most a few are in flight at once.</li>
+ * <li>A 429 pauses every request for as long as its Retry-After header says, then retries the throttled one.</li>
+ * <li>Server errors and network failures are retried with exponential backoff and full jitter.</li>
+ * <li>Waiting requests are sent most urgent {@link LinkPriority} first, oldest first within a priority.</li>
+ * </ul>
+ */
+@Slf4j
+@Singleton
+public class SpotifyRequestScheduler {
+    private static final double PERMITS_PER_SECOND = 5;
+    private static final int BURST = 10;
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int MAX_THROTTLES = 10;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+    // Shares are not worth holding for longer than this, they fall back to plain links instead
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final HttpPipeline httpPipeline;
+    private final ShareLinksMetrics metrics;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final int maxInFlight;
+    private final long baseBackoffMillis;
+
+    private final PriorityQueue<Job<?>> queue = new PriorityQueue<>(Comparator
+            .<Job<?>, LinkPriority>comparing(job -> job.priority)
+            .thenComparingLong(job -> job.sequence));
+    private long nextSequence;
+    private int inFlight;
+    private double tokens;
+    private long lastRefillNanos;
+    private long blockedUntilNanos;
+    private boolean pumpRequested;
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public SpotifyRequestScheduler(HttpPipeline httpPipeline, ShareLinksMetrics metrics) {
+        this(httpPipeline, metrics, PERMITS_PER_SECOND, BURST, MAX_IN_FLIGHT, BASE_BACKOFF_MILLIS);
+    }
+
+    public SpotifyRequestScheduler(HttpPipeline httpPipeline, ShareLinksMetrics metrics,
+                                   double permitsPerSecond, int burst, int maxInFlight, long baseBackoffMillis) {
+        this.httpPipeline = httpPipeline;
+        this.metrics = metrics;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxInFlight = maxInFlight;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-spotify-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+
+        // Requests submitted before Start() go out now, in priority order
+        RequestPump();
+    }
+
+    public void Shutdown() {
+        List<Job<?>> abandoned;
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+            abandoned = new ArrayList<>(queue);
+            queue.clear();
+        }
+
+        for (Job<?> job : abandoned) {
+            job.future.cancel(false);
+        }
+    }
+
+    /**
+     * Queues a request. The request is built right before each attempt, so that retries pick up a refreshed access
+     * token; the builder runs on the scheduler thread and may return null to give up.
+     *
+     * @return a future completing with what reader read from the response, or exceptionally once the request has
+     * failed for good
+     */
+    public <T> CompletableFuture<T> Submit(Supplier<Request> requestBuilder, HttpPipeline.ResponseReader<T> reader, LinkPriority priority) {
+        Job<T> job = new Job<>(requestBuilder, reader, priority);
+        synchronized (this) {
+            job.sequence = nextSequence++;
+            queue.add(job);
+        }
+        RequestPump();
+        return job.future;
+    }
+
+    public synchronized int GetQueueDepth() {
+        return queue.size();
+    }
+
+    private synchronized void RequestPump() {
+        if (scheduler != null && !pumpRequested) {
+            pumpRequested = true;
+            scheduler.execute(this::Pump);
+        }
+    }
+
+    private synchronized void SchedulePump(long delayNanos) {
+        if (scheduler != null) {
+            scheduler.schedule(this::Pump, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends as many waiting requests as the rate limit allows. Only runs on the scheduler thread.
+     */
+    private void Pump() {
+        List<Job<?>> ready = new ArrayList<>();
+        List<Job<?>> expired = new ArrayList<>();
+        synchronized (this) {
+            pumpRequested = false;
+            long now = System.nanoTime();
+
+            long blockedNanos = blockedUntilNanos - now;
+            if (blockedNanos > TimeUnit.SECONDS.toNanos(MAX_RETRY_AFTER_SECONDS)) {
+                expired.addAll(queue);
+                queue.clear();
+            } else if (blockedNanos > 0) {
+                if (!queue.isEmpty()) {
+                    SchedulePump(blockedNanos);
+                }
+            } else {
+                RefillTokens(now);
+                while (!queue.isEmpty() && inFlight < maxInFlight) {
+                    if (tokens < 1) {
+                        SchedulePump((long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1)));
+                        break;
+                    }
+                    tokens -= 1;
+                    inFlight++;
+                    ready.add(queue.poll());
+                }
+            }
+        }
+
+        for (Job<?> job : expired) {
+            job.future.completeExceptionally(new IOException("Spotify is rate limiting requests for too long"));
+        }
+        for (Job<?> job : ready) {
+            Send(job);
+        }
+    }
+
+    private <T> void Send(Job<T> job) {
+        metrics.Record(ShareLinksMetrics.SPOTIFY_QUEUE_WAIT, job.queuedAtNanos);
+        job.attempts++;
+
+        Request request;
+        try {
+            request = job.requestBuilder.get();
+        } catch (RuntimeException e) {
+            request = null;
+        }
+        if (request == null) {
+            OnSendComplete();
+            job.future.completeExceptionally(new IOException("Could not build Spotify request"));
+            return;
+        }
+
+        httpPipeline.Execute(request, job.reader).whenComplete((value, e) -> {
+            OnSendComplete();
+            if (e == null) {
+                job.future.complete(value);
+            } else {
+                OnFailure(job, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+    }
+
+    private void OnSendComplete() {
+        synchronized (this) {
+            inFlight--;
+        }
+        RequestPump();
+    }
+
+    private <T> void OnFailure(Job<T> job, Throwable e) {
+        if (job.future.isDone()) {
+            return;
+        }
+
+        if (e instanceof HttpStatusException && ((HttpStatusException) e).getCode() == 429 && job.throttles < MAX_THROTTLES) {
+            long retryAfterSeconds = GetRetryAfterSeconds((HttpStatusException) e);
+            metrics.Increment(ShareLinksMetrics.SPOTIFY_THROTTLED);
+            log.debug("[External Plugin][Share Links] Spotify is rate limiting requests, retrying in " + retryAfterSeconds + "s.");
+            synchronized (this) {
+                blockedUntilNanos = Math.max(blockedUntilNanos, System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+            }
+            // Being throttled is not the request's fault, so it keeps its place and does not use up an attempt
+            job.attempts--;
+            job.throttles++;
+            Requeue(job, 0);
+            return;
+        }
+
+        if (IsRetryable(e) && job.attempts < MAX_ATTEMPTS) {
+            metrics.Increment(ShareLinksMetrics.SPOTIFY_RETRIES);
+            Requeue(job, GetBackoffMillis(job.attempts));
+            return;
+        }
+
+        job.future.completeExceptionally(e);
+    }
+
+    private synchronized <T> void Requeue(Job<T> job, long delayMillis) {
+        if (scheduler == null) {
+            job.future.cancel(false);
+            return;
+        }
+
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                job.queuedAtNanos = System.nanoTime();
+                queue.add(job);
+            }
+            Pump();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void RefillTokens(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    private long GetBackoffMillis(int attempts) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(attempts - 1, 16));
+        // Full jitter keeps clients that failed together from retrying together
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean IsRetryable(Throwable e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).getCode() >= 500;
+        }
+        return e instanceof IOException;
+    }
+
+    private static long GetRetryAfterSeconds(HttpStatusException e) {
+        String retryAfter = e.getHeaders().get("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException ignored) {
+                // Spotify sends seconds, an HTTP date falls back to the default
+            }
+        }
+        return DEFAULT_RETRY_AFTER_SECONDS;
+    }
+
+    private static class Job<T> {
+        private final Supplier<Request> requestBuilder;
+        private final HttpPipeline.ResponseReader<T> reader;
+        private final LinkPriority priority;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private long sequence;
+        private long queuedAtNanos = System.nanoTime();
+        private int attempts;
+        private int throttles;
+
+        private Job(Supplier<Request> requestBuilder, HttpPipeline.ResponseReader<T> reader, LinkPriority priority) {
+            this.requestBuilder = requestBuilder;
+            this.reader = reader;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.sharelinks.utilities;
+
+import com.google.gson.Gson;
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.spotify.SpotifyAccessToken;
+import com.sharelinks.models.spotify.SpotifyRedirectUri;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.util.LinkBrowser;
+import okhttp3.*;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the Spotify access token in memory, persists it only when it changes and refreshes it in the background
+ * shortly before it expires. Concurrent callers share a single in-flight refresh, because a refresh token obtained
+ * through PKCE can only be exchanged once. Logging in receives the authorization redirect on a loopback port when
+ * possible, so no thread waits for the user.
+ */
+@Slf4j
+@Singleton
+public class SpotifyTokenManager {
+    private static final String SPOTIFY_CLIENT_ID = "818391e132f94352828d0de03d7dcdfd";
+    private static final String SPOTIFY_REDIRECT_URI = "https://raw.githubusercontent.com/kashmoneygt/share-media/master/SPOTIFY_REDIRECT.md";
+    private static final int SPOTIFY_REDIRECT_WAIT_SECONDS = 60;
+    // Waiting on the loopback port holds no thread, so the user can take their time
+    private static final int SPOTIFY_LOOPBACK_WAIT_SECONDS = 300;
+    public static final String TOKEN_KEY = ".spotify_token";
+    private static final int TOKEN_REFRESH_MARGIN_SECONDS = 60;
+
+    public static final KeyValueStore.Codec<SpotifyAccessToken> TOKEN_CODEC = new KeyValueStore.Codec<SpotifyAccessToken>() {
+        @Override
+        public void Write(DataOutputStream out, SpotifyAccessToken token) throws IOException {
+            KeyValueStore.WriteString(out, token.access_token);
+            KeyValueStore.WriteString(out, token.token_type);
+            out.writeInt(token.expires_in);
+            KeyValueStore.WriteString(out, token.scope);
+            KeyValueStore.WriteString(out, token.refresh_token);
+            out.writeLong(token.creation_time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+
+        @Override
+        public SpotifyAccessToken Read(DataInputStream in) throws IOException {
+            SpotifyAccessToken token = new SpotifyAccessToken();
+            token.access_token = KeyValueStore.ReadString(in);
+            token.token_type = KeyValueStore.ReadString(in);
+            token.expires_in = in.readInt();
+            token.scope = KeyValueStore.ReadString(in);
+            token.refresh_token = KeyValueStore.ReadString(in);
+            token.creation_time = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneId.systemDefault());
+            return token;
+        }
+    };
+
+    private final Gson gson = new Gson();
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private HttpPipeline httpPipeline;
+
+    @Inject
+    private SpotifyLoopbackListener spotifyLoopbackListener;
+
+    @Inject
+    private ClipboardUtility clipboardUtility;
+
+    @Inject
+    private KeyValueStore keyValueStore;
+
+    @Inject
+    private ShareLinksMetrics metrics;
+
+    @Inject
+    private ProviderEndpoints endpoints;
+
+    private volatile SpotifyAccessToken accessToken;
+    private boolean loadedFromDisk;
+    private CompletableFuture<SpotifyAccessToken> inFlightRefresh;
+    // Whether the in-flight refresh may run the authorization flow
+    private boolean inFlightRefreshAllowsAuthorization;
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-spotify-token");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+
+        // Warm the in-memory token (and schedule its refresh) before the first lookup needs it
+        AcquireAccessToken(false);
+    }
+
+    public synchronized void Shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            scheduledRefresh = null;
+        }
+    }
+
+    /**
+     * Returns a valid access token without blocking. In steady state the future is already complete; only a missing
+     * or expired token causes a disk read, a refresh or the interactive authorization flow, and those are shared by
+     * all concurrent callers and run on the token thread.
+     *
+     * @return a future completing with the access token, or with null if one could not be obtained
+     */
+    public CompletableFuture<SpotifyAccessToken> GetAccessToken() {
+        SpotifyAccessToken token = accessToken;
+        if (token != null && !IsExpired(token)) {
+            return CompletableFuture.completedFuture(token);
+        }
+
+        boolean joinedBackgroundRefresh;
+        CompletableFuture<SpotifyAccessToken> refresh;
+        synchronized (this) {
+            joinedBackgroundRefresh = inFlightRefresh != null && !inFlightRefreshAllowsAuthorization;
+            refresh = AcquireAccessToken(true);
+        }
+        if (!joinedBackgroundRefresh) {
+            // Our own attempt, which already prompted the user if it had to; a failed login is not retried
+            return refresh;
+        }
+
+        // The background refresh we joined does not prompt the user, so log in if it failed
+        return refresh.thenCompose(acquiredToken -> acquiredToken != null
+                ? CompletableFuture.completedFuture(acquiredToken)
+                : AcquireAccessToken(true));
+    }
+
+    /**
+     * @return whether the access token in memory is valid for a while yet, so that a lookup started now will neither
+     * refresh it nor ask the user to log in
+     */
+    public boolean HasValidAccessToken() {
+        SpotifyAccessToken token = accessToken;
+        return token != null && !IsExpired(token);
+    }
+
+    /**
+     * @return the access token in memory without refreshing it, which may be expired, or null if there is none
+     */
+    public SpotifyAccessToken GetCurrentAccessToken() {
+        return accessToken;
+    }
+
+    private synchronized CompletableFuture<SpotifyAccessToken> AcquireAccessToken(boolean allowAuthorization) {
+        if (inFlightRefresh != null) {
+            return inFlightRefresh;
+        }
+        if (scheduler == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<SpotifyAccessToken> refresh = new CompletableFuture<>();
+        inFlightRefresh = refresh;
+        inFlightRefreshAllowsAuthorization = allowAuthorization;
+        scheduler.execute(() -> {
+            CompletableFuture<SpotifyAccessToken> token;
+            try {
+                token = ObtainAccessToken(allowAuthorization);
+            } catch (Exception e) {
+                token = new CompletableFuture<>();
+                token.completeExceptionally(e);
+            }
+
+            token.whenComplete((acquiredToken, e) -> {
+                if (e != null) {
+                    log.warn("[External Plugin][Share Links] Error getting Spotify access token.", e);
+                }
+                synchronized (this) {
+                    inFlightRefresh = null;
+                }
+                refresh.complete(e == null ? acquiredToken : null);
+            });
+        });
+        return refresh;
+    }
+
+    /**
+     * Runs on the token thread. Disk reads happen inline; refreshes and the authorization flow complete later,
+     * without holding the thread.
+     */
+    private CompletableFuture<SpotifyAccessToken> ObtainAccessToken(boolean allowAuthorization) {
+        SpotifyAccessToken current = accessToken;
+        if (current == null && !loadedFromDisk) {
+            loadedFromDisk = true;
+            long loadStart = metrics.StartTimer();
+            current = keyValueStore.Get(TOKEN_KEY, TOKEN_CODEC);
+            if (current == null) {
+                // Saved by a version before the store, so it is saved again in the store's format
+                current = ReadLegacyToken(keyValueStore.GetFile(TOKEN_KEY));
+                if (current != null) {
+                    keyValueStore.Put(TOKEN_KEY, current, TOKEN_CODEC);
+                }
+            }
+            metrics.Record(ShareLinksMetrics.TOKEN_LOAD, loadStart);
+            if (current != null) {
+                accessToken = current;
+                ScheduleRefresh(current);
+            }
+        }
+
+        if (current != null && !IsExpired(current)) {
+            return CompletableFuture.completedFuture(current);
+        }
+
+        CompletableFuture<SpotifyAccessToken> next = CompletableFuture.completedFuture(null);
+        if (current != null && current.refresh_token != null) {
+            long refreshStart = metrics.StartTimer();
+            next = GetSpotifyAccessTokenFromRefreshToken(current)
+                    .whenComplete((token, e) -> metrics.Record(ShareLinksMetrics.TOKEN_REFRESH, refreshStart));
+        }
+        if (allowAuthorization) {
+            next = next.thenCompose(token -> {
+                if (token != null) {
+                    return CompletableFuture.completedFuture(token);
+                }
+                long authorizeStart = metrics.StartTimer();
+                return GetSpotifyAccessTokenFromAuthorizationFlow()
+                        .whenComplete((authorizedToken, e) -> metrics.Record(ShareLinksMetrics.TOKEN_AUTHORIZE, authorizeStart));
+            });
+        }
+
+        return next.thenApply(token -> {
+            if (token != null) {
+                accessToken = token;
+                keyValueStore.Put(TOKEN_KEY, token, TOKEN_CODEC);
+                ScheduleRefresh(token);
+            }
+            return token;
+        });
+    }
+
+    /**
+     * Reads a token written with Java serialization by versions before the {@link KeyValueStore}, so that upgrading
+     * does not log the user out. Only the token's own classes may be deserialized.
+     *
+     * @return the token, or null if the file does not hold a complete one
+     */
+    static SpotifyAccessToken ReadLegacyToken(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file))) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (!SpotifyAccessToken.class.getName().equals(desc.getName()) && !"java.time.Ser".equals(desc.getName())) {
+                    throw new InvalidClassException(desc.getName(), "Not part of a Spotify token");
+                }
+                return super.resolveClass(desc);
+            }
+        }) {
+            Object object = in.readObject();
+            if (!(object instanceof SpotifyAccessToken)) {
+                return null;
+            }
+            SpotifyAccessToken token = (SpotifyAccessToken) object;
+            return token.access_token != null && token.creation_time != null ? token : null;
+        } catch (IOException | ClassNotFoundException e) {
+            // E.g. the empty file older versions created before logging in
+            return null;
+        }
+    }
+
+    private synchronized void ScheduleRefresh(SpotifyAccessToken token) {
+        if (scheduler == null) {
+            return;
+        }
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+
+        long delayMillis = Math.max(0, Duration.between(LocalDateTime.now(), GetRefreshTime(token)).toMillis());
+        scheduledRefresh = scheduler.schedule(() -> AcquireAccessToken(false), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private LocalDateTime GetRefreshTime(SpotifyAccessToken accessToken) {
+        return accessToken.creation_time
+                .plusSeconds(accessToken.expires_in)
+                .minusSeconds(TOKEN_REFRESH_MARGIN_SECONDS);
+    }
+
+    private boolean IsExpired(SpotifyAccessToken accessToken) {
+        return !GetRefreshTime(accessToken).isAfter(LocalDateTime.now());
+    }
+
+    private CompletableFuture<SpotifyAccessToken> GetSpotifyAccessTokenFromAuthorizationFlow() {
+        String codeVerifier;
+        String codeChallenge;
+        try {
+            codeVerifier = generateCodeVerifier();
+            codeChallenge = generateCodeChallange(codeVerifier);
+        } catch (NoSuchAlgorithmException e) {
+            log.warn(null, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        String state = UUID.randomUUID().toString();
+
+        // Prefer receiving the redirect on a loopback port, and fall back to the user copying it
+        SpotifyLoopbackListener.Login login = config.useLoopbackLogin()
+                ? spotifyLoopbackListener.Listen(state, SPOTIFY_LOOPBACK_WAIT_SECONDS)
+                : null;
+        String redirectUri = login != null ? login.getRedirectUri() : SPOTIFY_REDIRECT_URI;
+
+        HttpUrl userAuthUrl = HttpUrl.parse(endpoints.GetSpotifyAuthorizationUrl()).newBuilder()
+                .addQueryParameter("client_id", SPOTIFY_CLIENT_ID)
+                .addQueryParameter("response_type", "code")
+                .addQueryParameter("redirect_uri", redirectUri)
+                .addQueryParameter("code_challenge_method", "S256")
+                .addQueryParameter("code_challenge", codeChallenge)
+                .addQueryParameter("state", state)
+                .build();
+        LinkBrowser.browse(userAuthUrl.toString());
+
+        CompletableFuture<SpotifyRedirectUri> redirect = login != null
+                ? login.getRedirect()
+                : CompletableFuture.completedFuture(WaitForRedirectUriOnClipboard());
+
+        return redirect.thenCompose(redirectResult -> {
+            if (redirectResult == null) {
+                log.warn("[External Plugin][Share Links] Error getting a valid redirect URL from user.");
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!redirectResult.error.isEmpty()) {
+                log.warn("[External Plugin][Share Links] RedirectURI returned error=" + redirectResult.error);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!redirectResult.state.equalsIgnoreCase(state)) {
+                log.warn("[External Plugin][Share Links] RedirectURI state=" + redirectResult.state + " does not equal original state=" + state);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            return GetAccessTokenFromUserAuth(redirectResult, redirectUri, codeVerifier);
+        });
+    }
+
+    /**
+     * Waits for the user to copy the redirect URL. Blocks the token thread, but no lookup thread.
+     */
+    private SpotifyRedirectUri WaitForRedirectUriOnClipboard() {
+        try {
+            String redirectUriString = clipboardUtility.GetStringStartingWithSubstringFromClipboard(SPOTIFY_REDIRECT_URI, SPOTIFY_REDIRECT_WAIT_SECONDS);
+            if (redirectUriString.isEmpty()) {
+                return null;
+            }
+            return SpotifyLoopbackListener.ParseQuery(new URI(redirectUriString).getRawQuery());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (URISyntaxException e) {
+            log.warn(null, e);
+        }
+
+        return null;
+    }
+
+    private CompletableFuture<SpotifyAccessToken> GetAccessTokenFromUserAuth(SpotifyRedirectUri redirectUri, String redirectUriString, String codeVerifier) {
+        RequestBody body = new FormBody.Builder()
+                .add("client_id", SPOTIFY_CLIENT_ID)
+                .add("grant_type", "authorization_code")
+                .add("code", redirectUri.code)
+                .add("redirect_uri", redirectUriString)
+                .add("code_verifier", codeVerifier)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(endpoints.GetSpotifyTokenUrl())
+                .post(body)
+                .build();
+
+        return httpPipeline.GetString(request).handle((json, e) -> {
+            if (e != null) {
+                log.warn("[External Plugin][Share Links] Error getting access token from user auth.", e);
+                return null;
+            }
+
+            SpotifyAccessToken accessToken = gson.fromJson(json, SpotifyAccessToken.class);
+            accessToken.creation_time = LocalDateTime.now();
+            return accessToken;
+        });
+    }
+
+    private CompletableFuture<SpotifyAccessToken> GetSpotifyAccessTokenFromRefreshToken(SpotifyAccessToken accessToken) {
+        // A refresh token that has been obtained through PKCE can be exchanged for an access token only once, after which it becomes invalid.
+        RequestBody body = new FormBody.Builder()
+                .add("client_id", SPOTIFY_CLIENT_ID)
+                .add("grant_type", "refresh_token")
+                .add("refresh_token", accessToken.refresh_token)
+                .build();
+
+        Request request = new Request.Builder()
+                .url(endpoints.GetSpotifyTokenUrl())
+                .post(body)
+                .build();
+
+        return httpPipeline.GetString(request).handle((json, e) -> {
+            if (e != null) {
+                log.warn("[External Plugin][Share Links] Error getting access token from refresh token.", e);
+                return null;
+            }
+
+            SpotifyAccessToken refreshedToken = gson.fromJson(json, SpotifyAccessToken.class);
+            refreshedToken.creation_time = LocalDateTime.now();
+            if (refreshedToken.refresh_token == null) {
+                refreshedToken.refresh_token = accessToken.refresh_token;
+            }
+            return refreshedToken;
+        });
+    }
+
+    private String generateCodeVerifier() {
+        SecureRandom secureRandom = new SecureRandom();
+        byte[] codeVerifier = new byte[32];
+        secureRandom.nextBytes(codeVerifier);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(codeVerifier);
+    }
+
+    private String generateCodeChallange(String codeVerifier) throws NoSuchAlgorithmException {
+        byte[] bytes = codeVerifier.getBytes(StandardCharsets.US_ASCII);
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        messageDigest.update(bytes, 0, bytes.length);
+        byte[] digest = messageDigest.digest();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+}
@@ -0,0 +1,184 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.spotify.SpotifyTrack;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces track lookups that arrive within a short window into a single call to the multi-id tracks endpoint,
+ * then fans the results out to every waiting caller. When more tracks are waiting than fit in one call, the most
+ * urgent ones go first.
+ */
+@Slf4j
+@Singleton
+public class SpotifyTrackBatcher {
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private SpotifyUtility spotifyUtility;
+
+    // Insertion ordered so that the oldest requests of a priority are sent first
+    private final Map<String, PendingTrack> pendingTracks = new LinkedHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledFlush;
+
+    private long requestCount;
+    private long batchCount;
+
+    public synchronized void Start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "share-links-spotify-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        scheduler = executor;
+    }
+
+    public synchronized void Shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            scheduledFlush = null;
+        }
+
+        for (PendingTrack pendingTrack : pendingTracks.values()) {
+            pendingTrack.future.cancel(false);
+        }
+        pendingTracks.clear();
+    }
+
+    /**
+     * Queues a track lookup for the next batch. Requests for a track id that is already queued share its future,
+     * and raise its priority if theirs is more urgent.
+     *
+     * @return a future completing with the track, or with null if it could not be looked up
+     */
+    public synchronized CompletableFuture<SpotifyTrack> GetSpotifyTrack(String trackId, LinkPriority priority) {
+        PendingTrack pendingTrack = pendingTracks.get(trackId);
+        if (pendingTrack != null) {
+            if (priority.compareTo(pendingTrack.priority) < 0) {
+                pendingTrack.priority = priority;
+            }
+            return pendingTrack.future;
+        }
+
+        CompletableFuture<SpotifyTrack> future = new CompletableFuture<>();
+        if (scheduler == null) {
+            future.completeExceptionally(new IllegalStateException("Spotify track batcher is not running"));
+            return future;
+        }
+
+        pendingTracks.put(trackId, new PendingTrack(future, priority));
+        requestCount++;
+
+        if (pendingTracks.size() >= SpotifyUtility.MAX_TRACKS_PER_REQUEST) {
+            ScheduleFlush(0);
+        } else if (scheduledFlush == null) {
+            ScheduleFlush(Math.max(0, config.trackBatchWindowMs()));
+        }
+        return future;
+    }
+
+    /**
+     * @return how many track lookups are waiting for the next batch
+     */
+    public synchronized int GetPendingCount() {
+        return pendingTracks.size();
+    }
+
+    public synchronized long GetRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long GetBatchCount() {
+        return batchCount;
+    }
+
+    private void ScheduleFlush(long delayMillis) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = scheduler.schedule(this::Flush, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void Flush() {
+        List<String> trackIds = new ArrayList<>();
+        List<CompletableFuture<SpotifyTrack>> futures = new ArrayList<>();
+        LinkPriority batchPriority = LinkPriority.PUBLIC;
+        synchronized (this) {
+            scheduledFlush = null;
+
+            // Stable sort, so the oldest requests still go first within a priority
+            List<Map.Entry<String, PendingTrack>> entries = new ArrayList<>(pendingTracks.entrySet());
+            entries.sort(Comparator.comparing(entry -> entry.getValue().priority));
+            for (Map.Entry<String, PendingTrack> entry : entries) {
+                if (trackIds.size() == SpotifyUtility.MAX_TRACKS_PER_REQUEST) {
+                    break;
+                }
+                PendingTrack pendingTrack = entry.getValue();
+                trackIds.add(entry.getKey());
+                futures.add(pendingTrack.future);
+                if (pendingTrack.priority.compareTo(batchPriority) < 0) {
+                    batchPriority = pendingTrack.priority;
+                }
+                pendingTracks.remove(entry.getKey());
+            }
+
+            // Anything beyond one full batch goes out right after this one
+            if (!pendingTracks.isEmpty() && scheduler != null) {
+                ScheduleFlush(0);
+            }
+            if (trackIds.isEmpty()) {
+                return;
+            }
+            batchCount++;
+        }
+
+        CompletableFuture<List<SpotifyTrack>> tracks;
+        try {
+            tracks = spotifyUtility.GetSpotifyTracks(trackIds, batchPriority);
+        } catch (Exception e) {
+            log.warn(null, e);
+            tracks = CompletableFuture.completedFuture(null);
+        }
+
+        tracks.whenComplete((result, e) -> {
+            for (int i = 0; i < futures.size(); i++) {
+                SpotifyTrack track = result != null && i < result.size() ? result.get(i) : null;
+                futures.get(i).complete(track);
+            }
+        });
+    }
+
+    private static class PendingTrack {
+        private final CompletableFuture<SpotifyTrack> future;
+        private LinkPriority priority;
+
+        private PendingTrack(CompletableFuture<SpotifyTrack> future, LinkPriority priority) {
+            this.future = future;
+            this.priority = priority;
+        }
+    }
+}
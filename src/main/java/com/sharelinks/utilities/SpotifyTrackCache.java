@@ -0,0 +1,177 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.spotify.SpotifyTrackMetadata;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size-bounded, TTL-expiring LRU cache of resolved Spotify track metadata, keyed by track id and persisted to the
+ * share-links dir so that it survives restarts.
+ */
+@Slf4j
+@Singleton
+public class SpotifyTrackCache {
+    private static final String CACHE_KEY = ".spotify_track_cache";
+
+    // Writes the live view of the cache, copied under the cache lock only when the write-behind flush runs
+    private final KeyValueStore.Codec<Collection<SpotifyTrackMetadata>> cacheCodec = new KeyValueStore.Codec<Collection<SpotifyTrackMetadata>>() {
+        @Override
+        public void Write(DataOutputStream out, Collection<SpotifyTrackMetadata> liveTracks) throws IOException {
+            List<SpotifyTrackMetadata> tracks;
+            synchronized (SpotifyTrackCache.this) {
+                tracks = new ArrayList<>(liveTracks);
+            }
+
+            out.writeInt(tracks.size());
+            for (SpotifyTrackMetadata track : tracks) {
+                KeyValueStore.WriteString(out, track.getTrackId());
+                KeyValueStore.WriteString(out, track.getName());
+                out.writeInt(track.getArtists().size());
+                for (String artist : track.getArtists()) {
+                    KeyValueStore.WriteString(out, artist);
+                }
+                KeyValueStore.WriteString(out, track.getUri());
+                KeyValueStore.WriteString(out, track.getExternalUrl());
+                KeyValueStore.WriteString(out, track.getAlbumImageUrl());
+                out.writeLong(track.getCachedAtMillis());
+            }
+        }
+
+        @Override
+        public Collection<SpotifyTrackMetadata> Read(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            List<SpotifyTrackMetadata> tracks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String trackId = KeyValueStore.ReadString(in);
+                String name = KeyValueStore.ReadString(in);
+                int artistCount = in.readInt();
+                List<String> artists = new ArrayList<>(artistCount);
+                for (int j = 0; j < artistCount; j++) {
+                    artists.add(KeyValueStore.ReadString(in));
+                }
+                String uri = KeyValueStore.ReadString(in);
+                String externalUrl = KeyValueStore.ReadString(in);
+                String albumImageUrl = KeyValueStore.ReadString(in);
+                long cachedAtMillis = in.readLong();
+                tracks.add(new SpotifyTrackMetadata(trackId, name, artists, uri, externalUrl, albumImageUrl, cachedAtMillis));
+            }
+            return tracks;
+        }
+    };
+
+    @Inject
+    private ShareLinksConfig config;
+
+    @Inject
+    private KeyValueStore keyValueStore;
+
+    // accessOrder = true makes iteration order least-recently-used first
+    private final LinkedHashMap<String, SpotifyTrackMetadata> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private boolean loaded;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expirationCount;
+
+    /**
+     * @return the cached metadata, or null if the track is not cached or its entry has expired
+     */
+    public synchronized SpotifyTrackMetadata Get(String trackId) {
+        LoadFromDisk();
+
+        SpotifyTrackMetadata metadata = entries.get(trackId);
+        if (metadata == null) {
+            missCount++;
+            return null;
+        }
+        if (IsExpired(metadata)) {
+            entries.remove(trackId);
+            expirationCount++;
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return metadata;
+    }
+
+    public synchronized void Put(SpotifyTrackMetadata metadata) {
+        LoadFromDisk();
+        entries.put(metadata.getTrackId(), metadata);
+        EvictOverflow();
+
+        // Rapid inserts coalesce into one write behind the caller, which is the only time the cache is copied
+        keyValueStore.Put(CACHE_KEY, entries.values(), cacheCodec);
+    }
+
+    public synchronized long GetHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long GetMissCount() {
+        return missCount;
+    }
+
+    public synchronized long GetEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long GetExpirationCount() {
+        return expirationCount;
+    }
+
+    public synchronized int GetSize() {
+        return entries.size();
+    }
+
+    private boolean IsExpired(SpotifyTrackMetadata metadata) {
+        long ttlMillis = TimeUnit.HOURS.toMillis(config.trackCacheTtlHours());
+        return System.currentTimeMillis() - metadata.getCachedAtMillis() > ttlMillis;
+    }
+
+    private void EvictOverflow() {
+        int maxSize = Math.max(0, config.trackCacheSize());
+        Iterator<Map.Entry<String, SpotifyTrackMetadata>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    private void LoadFromDisk() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        // Not kept by the store, since the entries are the only copy held in memory
+        Collection<SpotifyTrackMetadata> tracks = keyValueStore.Read(CACHE_KEY, cacheCodec);
+        if (tracks == null) {
+            return;
+        }
+
+        // Persisted oldest-first, so re-inserting restores the LRU order
+        for (SpotifyTrackMetadata metadata : tracks) {
+            if (!IsExpired(metadata)) {
+                entries.put(metadata.getTrackId(), metadata);
+            }
+        }
+        EvictOverflow();
+        log.debug("[External Plugin][Share Links] Loaded " + entries.size() + " cached Spotify tracks from disk.");
+    }
+}
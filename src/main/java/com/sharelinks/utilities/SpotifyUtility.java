@@ -1,264 +1,199 @@
 package com.sharelinks.utilities;
 
 import com.google.gson.Gson;
-import com.sharelinks.ShareLinksConfig;
-import com.sharelinks.models.LinkItem;
-import com.sharelinks.models.LinkItemType;
+import com.sharelinks.models.LinkPriority;
 import com.sharelinks.models.spotify.*;
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.client.util.LinkBrowser;
 import okhttp3.*;
 
-import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.swing.*;
-import java.awt.image.BufferedImage;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.util.Base64;
-import java.util.UUID;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Singleton
 public class SpotifyUtility {
-    private static final String SPOTIFY_CLIENT_ID = "818391e132f94352828d0de03d7dcdfd";
-    private static final String SPOTIFY_AUTHORIZATION_URI = "https://accounts.spotify.com/authorize";
-    private static final String SPOTIFY_REDIRECT_URI = "https://raw.githubusercontent.com/kashmoneygt/share-media/master/SPOTIFY_REDIRECT.md";
-    private static final int SPOTIFY_REDIRECT_WAIT_SECONDS = 60;
-    private static final String SPOTIFY_TOKEN_API = "https://accounts.spotify.com/api/token";
-    private static final String SPOTIFY_GET_TRACK_API = "https://api.spotify.com/v1/tracks/";
-    private static final String TOKEN_FILE = ".spotify_token";
-    private static final int TOKEN_EXPIRATION_ADDITIONAL_SECONDS = 60;
+    public static final int MAX_TRACKS_PER_REQUEST = 50;
+    // Album and playlist track pages hold at most 50 and 100 tracks
+    public static final int MAX_TRACKS_PER_PAGE = 50;
 
-    private SpotifyAccessToken accessToken;
+    // Only what the header of a playlist item shows, not its first page of tracks
+    private static final String PLAYLIST_FIELDS = "name,owner(display_name),images,external_urls,uri,tracks(total)";
+    private static final String PLAYLIST_TRACKS_FIELDS = "total,items(track(name,artists(name),external_urls,uri))";
 
-    @Inject
-    private ShareLinksConfig config;
+    private final Gson gson = new Gson();
 
     @Inject
-    private OkHttpClient okHttpClient;
+    private SpotifyRequestScheduler spotifyRequestScheduler;
 
     @Inject
-    private ClipboardUtility clipboardUtility;
+    private ProviderEndpoints endpoints;
 
     @Inject
-    private DiskUtility diskUtility;
-
-    public LinkItem CreateLinkItemFromSpotifyTrackId(String trackId) {
-        SpotifyTrack track = GetSpotifyTrack(trackId);
-        ImageIcon icon = GetSpotifyIcon(track);
-        String artist = track.artists.size() > 0 ? track.artists.get(0).name : "";
-        String url = config.spotifyLinkType() == SpotifyLinkType.WEB ? track.external_urls.spotify : track.uri;
-        return new LinkItem(LinkItemType.SPOTIFY_LINK, icon, track.name, artist, url, LocalDateTime.now());
-    }
+    private SpotifyTokenManager spotifyTokenManager;
 
-    private SpotifyTrack GetSpotifyTrack(String trackId) {
-        SetSpotifyAccessToken();
-        try {
-            Request request = new Request.Builder()
-                    .url(SPOTIFY_GET_TRACK_API + trackId)
-                    .header("Authorization", accessToken.token_type + " " + accessToken.access_token)
-                    .build();
+    @Inject
+    private SpotifyTrackCache spotifyTrackCache;
 
-            Response response = okHttpClient.newCall(request).execute();
-            if (!response.isSuccessful()) {
-                log.warn("[External Plugin][Share Links] Error getting track using Spotify access token.");
-                return null;
-            }
+    @Inject
+    private ShareLinksMetrics metrics;
 
-            return new Gson().fromJson(response.body().string(), SpotifyTrack.class);
-        } catch (Exception e) {
-            log.warn(null, e);
-            return null;
-        }
+    /**
+     * @return the cached metadata for a track, or null if it has to be looked up
+     */
+    public SpotifyTrackMetadata GetCachedSpotifyTrack(String trackId) {
+        return spotifyTrackCache.Get(trackId);
     }
 
-    private ImageIcon GetSpotifyIcon(SpotifyTrack track) {
-        try {
-            SpotifyImage image = track.album.images.stream().filter(i -> i.height == 64).findFirst().orElse(null);
-            Request request = new Request.Builder()
-                    .url(image.url)
-                    .build();
-
-            Response response = okHttpClient.newCall(request).execute();
-            if (!response.isSuccessful()) {
-                log.warn("[External Plugin][Share Links] Error getting image for Spotify track.");
-                return null;
-            }
-
-            BufferedImage icon = ImageIO.read(response.body().byteStream());
-            return new ImageIcon(icon);
-        } catch (Exception e) {
-            log.warn(null, e);
-            return null;
-        }
+    /**
+     * Reduces a looked up track to the metadata the plugin uses and caches it.
+     */
+    public SpotifyTrackMetadata CacheSpotifyTrack(String trackId, SpotifyTrack spotifyTrack) {
+        SpotifyTrackMetadata track = CreateSpotifyTrackMetadata(trackId, spotifyTrack);
+        spotifyTrackCache.Put(track);
+        return track;
     }
 
-    private void SetSpotifyAccessToken() {
-        SpotifyAccessToken accessToken = (SpotifyAccessToken) diskUtility.ReadObjectFromDisk(TOKEN_FILE);
-        if (accessToken != null && IsExpired(accessToken)) {
-            accessToken = GetSpotifyAccessTokenFromRefreshToken(accessToken);
-        }
-        if (accessToken == null) {
-            accessToken = GetSpotifyAccessTokenFromAuthorizationFlow();
-            diskUtility.WriteObjectToDisk(accessToken, TOKEN_FILE);
-        }
-
-        this.accessToken = accessToken;
+    /**
+     * Looks up several tracks with a single call to the multi-id tracks endpoint, through the
+     * {@link SpotifyRequestScheduler} so that rate limiting delays the lookup instead of failing it.
+     *
+     * @param trackIds at most MAX_TRACKS_PER_REQUEST track ids
+     * @return a future completing with the tracks in the same order as trackIds (with null for unknown ids), or with
+     * null if the lookup failed
+     */
+    public CompletableFuture<List<SpotifyTrack>> GetSpotifyTracks(List<String> trackIds, LinkPriority priority) {
+        HttpUrl url = HttpUrl.parse(endpoints.GetSpotifyTracksUrl()).newBuilder()
+                .addQueryParameter("ids", String.join(",", trackIds))
+                .build();
+
+        return GetJson(url, SpotifyTracks.class, priority, ShareLinksMetrics.SPOTIFY_TRACKS, ShareLinksMetrics.SPOTIFY_TRACKS_FAILED)
+                .thenApply(tracks -> tracks != null ? tracks.tracks : null);
     }
 
-    private SpotifyAccessToken GetSpotifyAccessTokenFromAuthorizationFlow() {
-        try {
-            String codeVerifier = generateCodeVerifier();
-            String codeChallenge = generateCodeChallange(codeVerifier);
-            String state = UUID.randomUUID().toString();
-
-            HttpUrl userAuthUrl = HttpUrl.parse(SPOTIFY_AUTHORIZATION_URI).newBuilder()
-                    .addQueryParameter("client_id", SPOTIFY_CLIENT_ID)
-                    .addQueryParameter("response_type", "code")
-                    .addQueryParameter("redirect_uri", SPOTIFY_REDIRECT_URI)
-                    .addQueryParameter("code_challenge_method", "S256")
-                    .addQueryParameter("code_challenge", codeChallenge)
-                    .addQueryParameter("state", state)
-                    .build();
-
-            String redirectUriString = PerformUserAuthAndGetRedirectUri(userAuthUrl.toString());
-            SpotifyRedirectUri redirectUri = ParseRedirectUri(redirectUriString);
-            if (redirectUri == null) {
-                log.warn("[External Plugin][Share Links] Error getting a valid redirect URL from user.");
-                return null;
-            }
-            if (!redirectUri.error.isEmpty()) {
-                log.warn("[External Plugin][Share Links] RedirectURI returned error=" + redirectUri.error);
-                return null;
-            }
-            if (!redirectUri.state.equalsIgnoreCase(state)) {
-                log.warn("[External Plugin][Share Links] RedirectURI state=" + redirectUri.state + " does not equal original state=" + state);
-                return null;
-            }
-
-            return GetAccessTokenFromUserAuth(redirectUri, codeVerifier);
-        } catch (Exception e) {
-            log.warn(null, e);
-            return null;
-        }
+    /**
+     * Looks up an album's name, artists, art and track count. Its tracks are paged in with GetSpotifyAlbumTracks().
+     *
+     * @return a future completing with the album, or with null if the lookup failed
+     */
+    public CompletableFuture<SpotifyAlbum> GetSpotifyAlbum(String albumId, LinkPriority priority) {
+        HttpUrl url = HttpUrl.parse(endpoints.GetSpotifyAlbumUrl(albumId));
+        return GetJson(url, SpotifyAlbum.class, priority, ShareLinksMetrics.SPOTIFY_COLLECTION, ShareLinksMetrics.SPOTIFY_COLLECTION_FAILED);
     }
 
-    private String PerformUserAuthAndGetRedirectUri(String authorizationUri) {
-        try {
-            LinkBrowser.browse(authorizationUri);
-            return clipboardUtility.GetStringStartingWithSubstringFromClipboard(SPOTIFY_REDIRECT_URI, SPOTIFY_REDIRECT_WAIT_SECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        return "";
+    /**
+     * Looks up a playlist's name, owner, art and track count, without any of its tracks.
+     *
+     * @return a future completing with the playlist, or with null if the lookup failed
+     */
+    public CompletableFuture<SpotifyPlaylist> GetSpotifyPlaylist(String playlistId, LinkPriority priority) {
+        HttpUrl url = HttpUrl.parse(endpoints.GetSpotifyPlaylistUrl(playlistId)).newBuilder()
+                .addQueryParameter("fields", PLAYLIST_FIELDS)
+                .build();
+        return GetJson(url, SpotifyPlaylist.class, priority, ShareLinksMetrics.SPOTIFY_COLLECTION, ShareLinksMetrics.SPOTIFY_COLLECTION_FAILED);
     }
 
-    private SpotifyRedirectUri ParseRedirectUri(String redirectUriString) throws URISyntaxException {
-        if (redirectUriString.isEmpty()) {
-            return null;
-        }
-
-        URI redirectUri = new URI(redirectUriString);
-        String[] params = redirectUri.getQuery().split("&");
-        if (params.length == 2) {
-            String[] code = params[0].split("=");
-            String[] state = params[1].split("=");
-            if (code[0].contains("error")) {
-                return new SpotifyRedirectUri("", code[code.length - 1], state[state.length - 1]);
-            } else {
-                return new SpotifyRedirectUri(code[code.length - 1], "", state[state.length - 1]);
-            }
-        }
-
-        return null;
+    /**
+     * Looks up one page of an album's tracks. Pages are only asked for while the user is looking at the album.
+     *
+     * @param limit at most MAX_TRACKS_PER_PAGE tracks
+     * @return a future completing with the page, or with null if the lookup failed
+     */
+    public CompletableFuture<SpotifyAlbumTracks> GetSpotifyAlbumTracks(String albumId, int offset, int limit) {
+        HttpUrl url = HttpUrl.parse(endpoints.GetSpotifyAlbumUrl(albumId) + "/tracks").newBuilder()
+                .addQueryParameter("offset", Integer.toString(offset))
+                .addQueryParameter("limit", Integer.toString(limit))
+                .build();
+        return GetJson(url, SpotifyAlbumTracks.class, LinkPriority.OWN, ShareLinksMetrics.SPOTIFY_PAGE, ShareLinksMetrics.SPOTIFY_PAGE_FAILED);
     }
 
-    private SpotifyAccessToken GetAccessTokenFromUserAuth(SpotifyRedirectUri redirectUri, String codeVerifier) {
-        try {
-            RequestBody body = new FormBody.Builder()
-                    .add("client_id", SPOTIFY_CLIENT_ID)
-                    .add("grant_type", "authorization_code")
-                    .add("code", redirectUri.code)
-                    .add("redirect_uri", SPOTIFY_REDIRECT_URI)
-                    .add("code_verifier", codeVerifier)
-                    .build();
-
-            Request request = new Request.Builder()
-                    .url(SPOTIFY_TOKEN_API)
-                    .post(body)
-                    .build();
+    /**
+     * Looks up one page of a playlist's tracks. Pages are only asked for while the user is looking at the playlist.
+     *
+     * @param limit at most MAX_TRACKS_PER_PAGE tracks
+     * @return a future completing with the page, or with null if the lookup failed
+     */
+    public CompletableFuture<SpotifyPlaylistTracks> GetSpotifyPlaylistTracks(String playlistId, int offset, int limit) {
+        HttpUrl url = HttpUrl.parse(endpoints.GetSpotifyPlaylistUrl(playlistId) + "/tracks").newBuilder()
+                .addQueryParameter("offset", Integer.toString(offset))
+                .addQueryParameter("limit", Integer.toString(limit))
+                .addQueryParameter("fields", PLAYLIST_TRACKS_FIELDS)
+                .build();
+        return GetJson(url, SpotifyPlaylistTracks.class, LinkPriority.OWN, ShareLinksMetrics.SPOTIFY_PAGE, ShareLinksMetrics.SPOTIFY_PAGE_FAILED);
+    }
 
-            Response response = okHttpClient.newCall(request).execute();
-            if (!response.isSuccessful()) {
-                log.warn("[External Plugin][Share Links] Error getting access token from user auth.");
+    /**
+     * Calls the Web API through the {@link SpotifyRequestScheduler}, so that rate limiting delays the call instead of
+     * failing it.
+     *
+     * @return a future completing with the decoded response, or with null if the call failed
+     */
+    private <T> CompletableFuture<T> GetJson(HttpUrl url, Class<T> type, LinkPriority priority, String latencyMetric,
+                                             String failureMetric) {
+        long start = metrics.StartTimer();
+        // Only a missing or expired token waits here, and the wait holds no thread
+        return spotifyTokenManager.GetAccessToken().thenCompose(accessToken -> {
+            if (accessToken == null) {
+                CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IOException("No Spotify access token"));
+                return failed;
+            }
+            return spotifyRequestScheduler.Submit(() -> CreateAuthorizedRequest(url), response -> {
+                String json = response.body().string();
+                long decodeStart = metrics.StartTimer();
+                T value = gson.fromJson(json, type);
+                metrics.Record(ShareLinksMetrics.SPOTIFY_DECODE, decodeStart);
+                return value;
+            }, priority);
+        }).handle((value, e) -> {
+            metrics.Record(latencyMetric, start);
+            if (e != null) {
+                log.warn("[External Plugin][Share Links] Error calling Spotify using access token for path=" + url.encodedPath(), e);
+                metrics.Increment(failureMetric);
                 return null;
             }
+            return value;
+        });
+    }
 
-            accessToken = new Gson().fromJson(response.body().string(), SpotifyAccessToken.class);
-            accessToken.creation_time = LocalDateTime.now();
-            return accessToken;
-        } catch (Exception e) {
-            log.warn(null, e);
+    /**
+     * @return a request carrying the current access token, read when the request is sent so that retries pick up a
+     * refreshed token, or null if there is no token
+     */
+    private Request CreateAuthorizedRequest(HttpUrl url) {
+        SpotifyAccessToken accessToken = spotifyTokenManager.GetCurrentAccessToken();
+        if (accessToken == null) {
+            log.warn("[External Plugin][Share Links] Error getting Spotify access token.");
             return null;
         }
-    }
 
-    private boolean IsExpired(SpotifyAccessToken accessToken) {
-        return accessToken.creation_time
-                .plusSeconds(accessToken.expires_in)
-                .plusSeconds(TOKEN_EXPIRATION_ADDITIONAL_SECONDS)
-                .isBefore(LocalDateTime.now());
+        return new Request.Builder()
+                .url(url)
+                .header("Authorization", accessToken.token_type + " " + accessToken.access_token)
+                .build();
     }
 
-    private SpotifyAccessToken GetSpotifyAccessTokenFromRefreshToken(SpotifyAccessToken accessToken) {
-        // A refresh token that has been obtained through PKCE can be exchanged for an access token only once, after which it becomes invalid.
-        try {
-            RequestBody body = new FormBody.Builder()
-                    .add("client_id", SPOTIFY_CLIENT_ID)
-                    .add("grant_type", "refresh_token")
-                    .add("refresh_token", accessToken.refresh_token)
-                    .build();
-
-            Request request = new Request.Builder()
-                    .url(SPOTIFY_TOKEN_API)
-                    .post(body)
-                    .build();
-
-            Response response = okHttpClient.newCall(request).execute();
-            if (!response.isSuccessful()) {
-                log.warn("[External Plugin][Share Links] Error getting access token from refresh token.");
-                return null;
+    private SpotifyTrackMetadata CreateSpotifyTrackMetadata(String trackId, SpotifyTrack track) {
+        List<String> artists = new ArrayList<>();
+        if (track.artists != null) {
+            for (SpotifyArtist artist : track.artists) {
+                artists.add(artist.name);
             }
-
-            accessToken = new Gson().fromJson(response.body().string(), SpotifyAccessToken.class);
-            accessToken.creation_time = LocalDateTime.now();
-            return accessToken;
-        } catch (Exception e) {
-            log.warn(null, e);
-            return null;
         }
-    }
 
-    private String generateCodeVerifier() {
-        SecureRandom secureRandom = new SecureRandom();
-        byte[] codeVerifier = new byte[32];
-        secureRandom.nextBytes(codeVerifier);
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(codeVerifier);
-    }
+        String albumImageUrl = null;
+        if (track.album != null && track.album.images != null) {
+            albumImageUrl = track.album.images.stream()
+                    .filter(i -> i.height == 64)
+                    .map(i -> i.url)
+                    .findFirst()
+                    .orElse(null);
+        }
 
-    private String generateCodeChallange(String codeVerifier) throws NoSuchAlgorithmException {
-        byte[] bytes = codeVerifier.getBytes(StandardCharsets.US_ASCII);
-        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-        messageDigest.update(bytes, 0, bytes.length);
-        byte[] digest = messageDigest.digest();
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        String externalUrl = track.external_urls != null ? track.external_urls.spotify : null;
+        return new SpotifyTrackMetadata(trackId, track.name, artists, track.uri, externalUrl, albumImageUrl, System.currentTimeMillis());
     }
 }
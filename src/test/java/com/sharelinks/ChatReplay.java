@@ -0,0 +1,104 @@
+package com.sharelinks;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.ChatMessageType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A stream of chat messages to replay, each at an offset from the start of the replay.
+ * <p>
+ * Recorded logs have one message per line, as tab-separated offset in milliseconds, {@link ChatMessageType}, sender
+ * name and message. Blank lines and lines starting with "#" are ignored.
+ */
+public class ChatReplay {
+    private static final String SPOTIFY_TRACK_URL = "https://open.spotify.com/track/";
+    private static final String ID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int ID_LENGTH = 22;
+
+    @Data
+    @RequiredArgsConstructor
+    public static class Message {
+        private final long offsetMillis;
+        private final ChatMessageType type;
+        private final String name;
+        private final String message;
+    }
+
+    private final List<Message> messages;
+
+    public ChatReplay(List<Message> messages) {
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+    }
+
+    public List<Message> GetMessages() {
+        return messages;
+    }
+
+    public long GetDurationMillis() {
+        return messages.isEmpty() ? 0 : messages.get(messages.size() - 1).offsetMillis;
+    }
+
+    public static ChatReplay FromLog(InputStream inputStream) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    throw new IOException("Expected 4 tab-separated fields on line " + lineNumber);
+                }
+                messages.add(new Message(Long.parseLong(fields[0]), ChatMessageType.valueOf(fields[1]), fields[2], fields[3]));
+            }
+        }
+        messages.sort((a, b) -> Long.compare(a.offsetMillis, b.offsetMillis));
+        return new ChatReplay(messages);
+    }
+
+    /**
+     * Creates a clan spamming Spotify tracks, interleaved with ordinary chat.
+     *
+     * @param messagesPerSecond rate of all messages, links or not
+     * @param linkShare         share of messages that share a link
+     * @param uniqueTracks      how many distinct tracks are shared. Picks are skewed towards the first tracks, so that
+     *                          popular tracks get reposted
+     * @param senders           how many distinct players send messages
+     */
+    public static ChatReplay Synthetic(int messageCount, double messagesPerSecond, double linkShare, int uniqueTracks, int senders, long seed) {
+        Random random = new Random(seed);
+        String[] trackIds = new String[uniqueTracks];
+        for (int i = 0; i < uniqueTracks; i++) {
+            StringBuilder id = new StringBuilder(ID_LENGTH);
+            for (int j = 0; j < ID_LENGTH; j++) {
+                id.append(ID_CHARS.charAt(random.nextInt(ID_CHARS.length())));
+            }
+            trackIds[i] = id.toString();
+        }
+
+        List<Message> messages = new ArrayList<>(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            long offsetMillis = (long) (i * 1000 / messagesPerSecond);
+            String name = "Clanmate " + random.nextInt(senders);
+            String message = random.nextDouble() < linkShare
+                    ? "!Share " + SPOTIFY_TRACK_URL + trackIds[random.nextInt(random.nextInt(uniqueTracks) + 1)]
+                    : "gz on the drop " + i;
+            messages.add(new Message(offsetMillis, ChatMessageType.FRIENDSCHAT, name, message));
+        }
+        return new ChatReplay(messages);
+    }
+}
@@ -0,0 +1,428 @@
+package com.sharelinks;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.testing.fieldbinder.Bind;
+import com.google.inject.testing.fieldbinder.BoundFieldModule;
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkMatch;
+import com.sharelinks.models.PendingShare;
+import com.sharelinks.models.spotify.SpotifyAccessToken;
+import com.sharelinks.utilities.DiskUtility;
+import com.sharelinks.utilities.KeyValueStore;
+import com.sharelinks.utilities.LinkRecognizer;
+import com.sharelinks.utilities.ProviderEndpoints;
+import com.sharelinks.utilities.ShareIngestQueue;
+import com.sharelinks.utilities.ShareLinksMetrics;
+import com.sharelinks.utilities.SpotifyTokenManager;
+import net.runelite.api.Client;
+import net.runelite.api.events.ChatMessage;
+import net.runelite.client.chat.ChatCommandManager;
+import net.runelite.client.chat.ChatMessageManager;
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.ui.ClientToolbar;
+import okhttp3.OkHttpClient;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.inject.Inject;
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.*;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the real plugin end to end against a {@link StubSpotifyServer}: replays chat on a simulated client thread,
+ * resolves links through the real HTTP stack and measures how long each shared link takes to show up resolved in the
+ * panel, how responsive the EDT stays meanwhile, and how many links never show up.
+ * <p>
+ * Only the RuneLite services the plugin talks to are mocked; the client never is logged in, so every sender is a
+ * stranger or a friend as the chat type says.
+ */
+public class ChatReplayHarness implements AutoCloseable {
+    private static final long EDT_PROBE_INTERVAL_MILLIS = 5;
+    private static final long DRAIN_POLL_MILLIS = 20;
+
+    @Mock
+    @Bind
+    private Client client;
+
+    @Mock
+    @Bind
+    private ClientToolbar clientToolbar;
+
+    @Mock
+    @Bind
+    private ChatMessageManager chatMessageManager;
+
+    @Mock
+    @Bind
+    private ChatCommandManager chatCommandManager;
+
+    @Mock
+    @Bind
+    private DiskUtility diskUtility;
+
+    @Bind
+    private final ShareLinksConfig config;
+
+    @Bind
+    private final ProviderEndpoints providerEndpoints;
+
+    @Bind
+    private final KeyValueStore keyValueStore;
+
+    @Bind
+    private final OkHttpClient okHttpClient = new OkHttpClient();
+
+    @Bind
+    private final ShareLinksMetrics metrics = new ShareLinksMetrics();
+
+    // Tells which shares were shed on the way in
+    @Bind
+    private final ShareIngestQueue shareIngestQueue;
+
+    @Inject
+    private ShareLinksPlugin plugin;
+
+    @Inject
+    private LinkRecognizer linkRecognizer;
+
+    private final StubSpotifyServer server;
+
+    // Shared links not yet shown resolved or plain, by link key: the nano time each was dispatched at
+    private final Map<String, Deque<Long>> pendingShares = new HashMap<>();
+    private final List<Long> visibleLatencies = new ArrayList<>();
+    private final List<Long> edtDelays = new ArrayList<>();
+    // Only used on the EDT
+    private final Set<LinkItem> seenItems = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private int pendingShareCount;
+    // Queued shares that were dropped later to make room, which of them is not known
+    private int evictedShareCount;
+    // Only used on the client thread
+    private Boolean lastOfferQueued;
+    private int sharedLinkCount;
+    private int visibleResolvedCount;
+    private int visiblePlainCount;
+
+    private ScheduledExecutorService edtProbe;
+
+    public ChatReplayHarness(StubSpotifyServer server, ShareLinksConfig config, File storeDirectory) {
+        this.server = server;
+        this.config = config;
+        this.providerEndpoints = new ProviderEndpoints(server.GetBaseUrl(), server.GetBaseUrl(), server.GetBaseUrl() + "oembed");
+        this.keyValueStore = new KeyValueStore(storeDirectory);
+        this.shareIngestQueue = new ShareIngestQueue(config, metrics) {
+            @Override
+            public boolean Offer(PendingShare share) {
+                boolean queued = super.Offer(share);
+                lastOfferQueued = queued;
+                return queued;
+            }
+        };
+    }
+
+    /**
+     * Starts the plugin with an expired Spotify token, so that the first lookup refreshes it through the stub server.
+     */
+    public void Start() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        Injector injector = Guice.createInjector(BoundFieldModule.of(this));
+        injector.injectMembers(this);
+
+        Field injectorField = Plugin.class.getDeclaredField("injector");
+        injectorField.setAccessible(true);
+        injectorField.set(plugin, injector);
+
+        SpotifyAccessToken expiredToken = new SpotifyAccessToken();
+        expiredToken.access_token = "expired-token";
+        expiredToken.token_type = "Bearer";
+        expiredToken.expires_in = 3600;
+        expiredToken.refresh_token = "seed-refresh-token";
+        expiredToken.creation_time = LocalDateTime.now().minusHours(2);
+        keyValueStore.Start();
+        keyValueStore.Put(SpotifyTokenManager.TOKEN_KEY, expiredToken, SpotifyTokenManager.TOKEN_CODEC);
+
+        SwingUtilities.invokeAndWait(() ->
+        {
+            plugin.startUp();
+            JList<?> list = FindList(injector.getInstance(ShareLinksPanel.class));
+            list.addPropertyChangeListener("model", e -> WatchModel(list));
+            WatchModel(list);
+        });
+
+        edtProbe = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "replay-edt-probe"));
+        edtProbe.scheduleAtFixedRate(() ->
+        {
+            long posted = System.nanoTime();
+            SwingUtilities.invokeLater(() -> Record(edtDelays, System.nanoTime() - posted));
+        }, EDT_PROBE_INTERVAL_MILLIS, EDT_PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays chat, then waits for every shared link to show up or for the drain timeout to pass.
+     *
+     * @param speed how many times faster than recorded to replay
+     */
+    public Report Replay(ChatReplay replay, double speed, long drainTimeoutMillis) throws Exception {
+        ScheduledExecutorService clientThread = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "replay-client-thread"));
+        List<ScheduledFuture<?>> dispatches = new ArrayList<>();
+        long start = System.nanoTime();
+        for (ChatReplay.Message message : replay.GetMessages()) {
+            long delayMicros = (long) (message.getOffsetMillis() * 1000 / speed);
+            dispatches.add(clientThread.schedule(() -> Dispatch(message), delayMicros, TimeUnit.MICROSECONDS));
+        }
+        for (ScheduledFuture<?> dispatch : dispatches) {
+            dispatch.get();
+        }
+        clientThread.shutdown();
+        long dispatchNanos = System.nanoTime() - start;
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        while (GetUnansweredShareCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+        SwingUtilities.invokeAndWait(() -> {});
+
+        synchronized (this) {
+            int shedCount = (int) (metrics.GetCount(ShareLinksMetrics.INGEST_RATE_LIMITED)
+                    + metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED)
+                    + metrics.GetCount(ShareLinksMetrics.INGEST_COLLAPSED));
+            return new Report(replay.GetMessages().size(), sharedLinkCount, visibleResolvedCount, visiblePlainCount,
+                    shedCount, GetUnansweredShareCount(), dispatchNanos, System.nanoTime() - start, Sorted(visibleLatencies), Sorted(edtDelays),
+                    server.GetRequestCount(StubSpotifyServer.TRACKS_PATH), server.GetRequestCount(StubSpotifyServer.TOKEN_PATH),
+                    server.GetRequestCount(StubSpotifyServer.IMAGES_PATH), server.GetInjectedErrorCount(),
+                    server.GetInjectedThrottleCount(), metrics.GetCount(ShareLinksMetrics.RESOLVE_REJECTED));
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (edtProbe != null) {
+            edtProbe.shutdownNow();
+        }
+        if (plugin != null) {
+            SwingUtilities.invokeAndWait(plugin::shutDown);
+        }
+    }
+
+    private void Dispatch(ChatReplay.Message message) {
+        // Pending before the plugin sees it, since a repeat share may show up before onChatMessage returns
+        String key = null;
+        Long dispatched = System.nanoTime();
+        LinkMatch linkMatch = new LinkMatch();
+        if (linkRecognizer.Recognize(message.getMessage(), linkMatch)) {
+            key = LinkItem.keyOf(linkMatch.getKind(), linkMatch.getId(message.getMessage()));
+            synchronized (this) {
+                pendingShares.computeIfAbsent(key, k -> new ArrayDeque<>()).addLast(dispatched);
+                pendingShareCount++;
+                sharedLinkCount++;
+            }
+        }
+
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setType(message.getType());
+        chatMessage.setName(message.getName());
+        chatMessage.setMessage(message.getMessage());
+        lastOfferQueued = null;
+        long droppedCount = metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED);
+        plugin.onChatMessage(chatMessage);
+
+        if (key != null) {
+            synchronized (this) {
+                if (!Boolean.TRUE.equals(lastOfferQueued)) {
+                    // Shed, so it will never show up, unless a grouped row of its link already answered it
+                    if (pendingShares.get(key).removeLastOccurrence(dispatched)) {
+                        pendingShareCount--;
+                    }
+                } else if (metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED) > droppedCount) {
+                    evictedShareCount++;
+                }
+            }
+        }
+    }
+
+    private void WatchModel(JList<?> list) {
+        ListModel<?> model = list.getModel();
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                CheckRows(model, e.getIndex0(), e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                CheckRows(model, e.getIndex0(), e.getIndex1());
+            }
+        });
+    }
+
+    private void CheckRows(ListModel<?> model, int index0, int index1) {
+        int last = Math.min(Math.max(index0, index1), model.getSize() - 1);
+        for (int index = Math.max(0, Math.min(index0, index1)); index <= last; index++) {
+            Object element = model.getElementAt(index);
+            if (element instanceof LinkItem && !((LinkItem) element).isPlaceholder() && seenItems.add((LinkItem) element)) {
+                OnVisible((LinkItem) element);
+            }
+        }
+    }
+
+    /**
+     * A resolved row answers the oldest pending share of its link; a grouped row answers every pending share of it.
+     */
+    private synchronized void OnVisible(LinkItem item) {
+        Deque<Long> shares = pendingShares.get(item.getKey());
+        if (shares == null || shares.isEmpty()) {
+            // Restored from history or already answered
+            return;
+        }
+
+        long now = System.nanoTime();
+        int answered = config.groupRepeatShares() ? shares.size() : 1;
+        for (int i = 0; i < answered; i++) {
+            visibleLatencies.add(now - shares.removeFirst());
+            if (item.getImageUrl() != null) {
+                visibleResolvedCount++;
+            } else {
+                visiblePlainCount++;
+            }
+        }
+        pendingShareCount -= answered;
+    }
+
+    private synchronized int GetUnansweredShareCount() {
+        return Math.max(0, pendingShareCount - evictedShareCount);
+    }
+
+    private synchronized void Record(List<Long> samples, long nanos) {
+        samples.add(nanos);
+    }
+
+    private static JList<?> FindList(Container container) {
+        for (Component component : container.getComponents()) {
+            if (component instanceof JList) {
+                return (JList<?>) component;
+            }
+            if (component instanceof Container) {
+                JList<?> list = FindList((Container) component);
+                if (list != null) {
+                    return list;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long[] Sorted(List<Long> samples) {
+        long[] sorted = new long[samples.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Outcome of one replay. Latencies are exact, in nanoseconds.
+     */
+    public static class Report {
+        public final int messageCount;
+        public final int sharedLinkCount;
+        public final int visibleResolvedCount;
+        // Shown as a plain link because the lookup failed
+        public final int visiblePlainCount;
+        // Rate limited, dropped or collapsed on the way in
+        public final int shedCount;
+        // Never shown before the drain timeout, though not shed
+        public final int missingCount;
+        public final long dispatchNanos;
+        public final long totalNanos;
+        public final long[] visibleLatencies;
+        public final long[] edtDelays;
+        public final long trackRequestCount;
+        public final long tokenRequestCount;
+        public final long imageRequestCount;
+        public final long injectedErrorCount;
+        public final long injectedThrottleCount;
+        public final long rejectedCount;
+
+        Report(int messageCount, int sharedLinkCount, int visibleResolvedCount, int visiblePlainCount, int shedCount,
+               int missingCount, long dispatchNanos, long totalNanos, long[] visibleLatencies, long[] edtDelays,
+               long trackRequestCount, long tokenRequestCount, long imageRequestCount, long injectedErrorCount,
+               long injectedThrottleCount, long rejectedCount) {
+            this.messageCount = messageCount;
+            this.sharedLinkCount = sharedLinkCount;
+            this.visibleResolvedCount = visibleResolvedCount;
+            this.visiblePlainCount = visiblePlainCount;
+            this.shedCount = shedCount;
+            this.missingCount = missingCount;
+            this.dispatchNanos = dispatchNanos;
+            this.totalNanos = totalNanos;
+            this.visibleLatencies = visibleLatencies;
+            this.edtDelays = edtDelays;
+            this.trackRequestCount = trackRequestCount;
+            this.tokenRequestCount = tokenRequestCount;
+            this.imageRequestCount = imageRequestCount;
+            this.injectedErrorCount = injectedErrorCount;
+            this.injectedThrottleCount = injectedThrottleCount;
+            this.rejectedCount = rejectedCount;
+        }
+
+        public long GetVisibleLatencyMillis(double percentile) {
+            return Percentile(visibleLatencies, percentile) / 1_000_000;
+        }
+
+        public long GetEdtDelayMillis(double percentile) {
+            return Percentile(edtDelays, percentile) / 1_000_000;
+        }
+
+        public double GetLinksPerSecond() {
+            return totalNanos > 0 ? (visibleResolvedCount + visiblePlainCount) * 1e9 / totalNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("messages=%d links=%d resolved=%d plain=%d shed=%d missing=%d rejected=%d%n"
+                            + "dispatch=%dms total=%dms throughput=%.1f links/s%n"
+                            + "link visible p50=%dms p95=%dms p99=%dms max=%dms%n"
+                            + "edt delay p50=%dms p99=%dms max=%dms (%d probes)%n"
+                            + "server tracks=%d token=%d images=%d injected errors=%d throttles=%d",
+                    messageCount, sharedLinkCount, visibleResolvedCount, visiblePlainCount, shedCount, missingCount, rejectedCount,
+                    dispatchNanos / 1_000_000, totalNanos / 1_000_000, GetLinksPerSecond(),
+                    GetVisibleLatencyMillis(0.5), GetVisibleLatencyMillis(0.95), GetVisibleLatencyMillis(0.99),
+                    GetVisibleLatencyMillis(1), GetEdtDelayMillis(0.5), GetEdtDelayMillis(0.99), GetEdtDelayMillis(1),
+                    edtDelays.length, trackRequestCount, tokenRequestCount, imageRequestCount, injectedErrorCount,
+                    injectedThrottleCount);
+        }
+
+        private static long Percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
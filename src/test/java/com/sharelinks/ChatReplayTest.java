@@ -0,0 +1,137 @@
+package com.sharelinks;
+
+import net.runelite.api.ChatMessageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays clan chat through the whole plugin against a stub Spotify and checks that no shared link is lost, unless
+ * it is shed on purpose. The logged reports are the numbers to compare across changes.
+ */
+public class ChatReplayTest {
+    private static final Logger log = LoggerFactory.getLogger(ChatReplayTest.class);
+    private static final long DRAIN_TIMEOUT_MILLIS = 30_000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StubSpotifyServer server;
+
+    @Before
+    public void before() throws Exception {
+        server = new StubSpotifyServer();
+        server.Start();
+    }
+
+    @After
+    public void after() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void recordedLogShowsEveryLink() throws Exception {
+        server.SetLatency(30, 20);
+
+        ChatReplay replay;
+        try (InputStream log = getClass().getResourceAsStream("clan-music-night.log")) {
+            replay = ChatReplay.FromLog(log);
+        }
+
+        ChatReplayHarness.Report report = replay(replay, 10, false);
+        assertEquals(0, report.missingCount);
+        assertEquals(report.sharedLinkCount, report.visibleResolvedCount + report.visiblePlainCount);
+        assertEquals(1, report.tokenRequestCount);
+    }
+
+    @Test
+    public void clanSpamWithFailingSpotifyShowsEveryLink() throws Exception {
+        server.SetLatency(30, 20);
+        server.SetFailureRates(0.05, 0.02);
+
+        ChatReplayHarness.Report report = replay(ChatReplay.Synthetic(600, 100, 0.6, 80, 40, 1), 1, false);
+        assertEquals(0, report.missingCount);
+        assertTrue(report.visibleResolvedCount > 0);
+        // Batching and caching mean far fewer lookups than shares
+        assertTrue(report.trackRequestCount < report.sharedLinkCount);
+    }
+
+    @Test
+    public void groupedClanSpamShowsEveryLink() throws Exception {
+        server.SetLatency(80, 40);
+
+        ChatReplayHarness.Report report = replay(ChatReplay.Synthetic(600, 200, 0.6, 80, 40, 2), 1, true);
+        assertEquals(0, report.missingCount);
+        assertEquals(0, report.rejectedCount);
+        assertTrue(report.visibleResolvedCount + report.visiblePlainCount + report.shedCount >= report.sharedLinkCount);
+    }
+
+    @Test
+    public void spammerIsShedWithoutHoldingUpClan() throws Exception {
+        server.SetLatency(30, 20);
+
+        List<ChatReplay.Message> messages = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(new ChatReplay.Message(i * 10, ChatMessageType.PUBLICCHAT, "Spammer",
+                    "!Share https://open.spotify.com/track/" + String.format("spam%018d", i)));
+        }
+        for (int i = 0; i < 25; i++) {
+            messages.add(new ChatReplay.Message(i * 400, ChatMessageType.FRIENDSCHAT, "Clanmate " + i % 5,
+                    "!Share https://open.spotify.com/track/" + String.format("clan%018d", i)));
+        }
+        messages.sort(Comparator.comparingLong(ChatReplay.Message::getOffsetMillis));
+
+        ChatReplayHarness.Report report = replay(new ChatReplay(messages), 1, false);
+        assertEquals(0, report.missingCount);
+        assertEquals(0, report.rejectedCount);
+        // The spammer gets a minute's worth of shares, and the clan all of theirs
+        assertTrue(report.shedCount >= 980);
+        assertTrue(report.visibleResolvedCount + report.visiblePlainCount >= 25);
+    }
+
+    @Test
+    public void sharedPlaylistsShowHeadersWithoutLoadingTracks() throws Exception {
+        server.SetLatency(30, 20);
+
+        List<ChatReplay.Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(new ChatReplay.Message(i * 200, ChatMessageType.FRIENDSCHAT, "Clanmate " + i,
+                    "!Share https://open.spotify.com/playlist/" + String.format("list%018d", i)));
+        }
+
+        ChatReplayHarness.Report report = replay(new ChatReplay(messages), 1, false);
+        assertEquals(0, report.missingCount);
+        assertEquals(5, report.visibleResolvedCount);
+        assertEquals(5, server.GetRequestCount(StubSpotifyServer.PLAYLISTS_PATH));
+        // Tracks are only paged in once a playlist is expanded
+        assertEquals(0, server.GetRequestCount(StubSpotifyServer.PLAYLIST_TRACKS_PATH));
+    }
+
+    private ChatReplayHarness.Report replay(ChatReplay replay, double speed, boolean groupRepeatShares) throws Exception {
+        ShareLinksConfig config = new ShareLinksConfig() {
+            @Override
+            public boolean groupRepeatShares() {
+                return groupRepeatShares;
+            }
+        };
+
+        try (ChatReplayHarness harness = new ChatReplayHarness(server, config, temporaryFolder.newFolder())) {
+            harness.Start();
+            ChatReplayHarness.Report report = harness.Replay(replay, speed, DRAIN_TIMEOUT_MILLIS);
+            log.info("Chat replay finished:\n{}", report);
+            return report;
+        }
+    }
+}
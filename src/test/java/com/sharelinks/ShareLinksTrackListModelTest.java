@@ -0,0 +1,105 @@
+package com.sharelinks;
+
+import com.sharelinks.models.CollectionTrack;
+import com.sharelinks.models.TrackPage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.sharelinks.ShareLinksTrackListModel.MAX_LOADING_PAGES;
+import static com.sharelinks.ShareLinksTrackListModel.MAX_RESIDENT_PAGES;
+import static com.sharelinks.ShareLinksTrackListModel.PAGE_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShareLinksTrackListModelTest {
+    private static final int TOTAL = 2000;
+
+    // Offset -> page result, in the order the pages were asked for
+    private final Map<Integer, CompletableFuture<TrackPage>> requests = new LinkedHashMap<>();
+    private final ShareLinksTrackListModel model = new ShareLinksTrackListModel((offset, limit) -> {
+        CompletableFuture<TrackPage> page = new CompletableFuture<>();
+        requests.put(offset, page);
+        return page;
+    }, Runnable::run, () -> {
+    });
+
+    @Test
+    public void loadsFirstPageBeforeTrackCountIsKnown() {
+        model.loadRows(-1, -1);
+
+        assertEquals(1, requests.size());
+        assertEquals(0, model.getSize());
+        Respond(0);
+        assertEquals(TOTAL, model.getSize());
+        assertNotNull(model.getElementAt(0));
+        assertNull(model.getElementAt(PAGE_SIZE));
+    }
+
+    @Test
+    public void loadsOnlyPagesInView() {
+        model.loadRows(-1, -1);
+        Respond(0);
+
+        model.loadRows(10 * PAGE_SIZE + 5, 10 * PAGE_SIZE + 15);
+        assertEquals(2, requests.size());
+        assertTrue(requests.containsKey(10 * PAGE_SIZE));
+    }
+
+    @Test
+    public void dropsLeastRecentlyViewedPagesAndReloadsThem() {
+        model.loadRows(-1, -1);
+        Respond(0);
+        for (int page = 1; page <= MAX_RESIDENT_PAGES; page++) {
+            model.loadRows(page * PAGE_SIZE, page * PAGE_SIZE);
+            Respond(page * PAGE_SIZE);
+        }
+
+        assertEquals(MAX_RESIDENT_PAGES, model.getResidentPageCount());
+        assertNull(model.getElementAt(0));
+
+        requests.clear();
+        model.loadRows(0, 10);
+        assertTrue(requests.containsKey(0));
+    }
+
+    @Test
+    public void limitsPagesLoadingAtOnce() {
+        model.loadRows(-1, -1);
+        Respond(0);
+
+        // Rows in view span more pages than may load at once, e.g. while dragging the scroll bar
+        requests.clear();
+        model.loadRows(PAGE_SIZE, 5 * PAGE_SIZE);
+        assertEquals(MAX_LOADING_PAGES, requests.size());
+
+        // Scrolled on before the pages arrived: only the pages now in view are loaded next
+        model.loadRows(20 * PAGE_SIZE, 20 * PAGE_SIZE);
+        Respond(PAGE_SIZE);
+        assertTrue(requests.containsKey(20 * PAGE_SIZE));
+        assertEquals(MAX_LOADING_PAGES + 1, requests.size());
+    }
+
+    @Test
+    public void ignoresPagesArrivingAfterClose() {
+        model.loadRows(-1, -1);
+        model.close();
+        Respond(0);
+
+        assertEquals(0, model.getSize());
+    }
+
+    private void Respond(int offset) {
+        List<CollectionTrack> tracks = new ArrayList<>();
+        for (int i = offset; i < Math.min(TOTAL, offset + PAGE_SIZE); i++) {
+            tracks.add(new CollectionTrack("Track " + i, "Artist", "https://open.spotify.com/track/" + i));
+        }
+        requests.get(offset).complete(new TrackPage(offset, TOTAL, tracks));
+    }
+}
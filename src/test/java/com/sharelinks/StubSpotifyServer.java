@@ -0,0 +1,212 @@
+package com.sharelinks;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Spotify Web API, the Spotify accounts service and the album art CDN, serving
+ * {@code /v1/tracks}, {@code /v1/playlists/<id>}, {@code /v1/playlists/<id>/tracks}, {@code /api/token} and
+ * {@code /images/<id>.png}. Playlists all hold PLAYLIST_TRACK_COUNT tracks. Every response can be delayed, and a share of
+ * them can be turned into server errors or 429s, to reproduce a slow or struggling Spotify.
+ */
+public class StubSpotifyServer implements AutoCloseable {
+    public static final String TRACKS_PATH = "/v1/tracks";
+    public static final String TOKEN_PATH = "/api/token";
+    public static final String IMAGES_PATH = "/images/";
+    public static final String PLAYLISTS_PATH = "/v1/playlists/";
+    // Counts requests for pages of any playlist's tracks
+    public static final String PLAYLIST_TRACKS_PATH = "/v1/playlists/*/tracks";
+    public static final int PLAYLIST_TRACK_COUNT = 1500;
+
+    private final MockWebServer server = new MockWebServer();
+    private final Random random = new Random(42);
+    private final byte[] albumArt;
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicLong injectedThrottleCount = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+
+    public StubSpotifyServer() throws IOException {
+        albumArt = CreateAlbumArt();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return Respond(request);
+            }
+        });
+    }
+
+    public void Start() throws IOException {
+        server.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Delays every response by latency plus a uniformly random jitter.
+     */
+    public void SetLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = jitterMillis;
+    }
+
+    /**
+     * Token responses are never failed.
+     *
+     * @param errorRate    share of responses that fail with a 500
+     * @param throttleRate share of responses that fail with a 429 asking to retry after a second
+     */
+    public void SetFailureRates(double errorRate, double throttleRate) {
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+    }
+
+    public String GetBaseUrl() {
+        return server.url("/").toString();
+    }
+
+    public long GetRequestCount(String path) {
+        AtomicLong count = requestCounts.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    public long GetInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    public long GetInjectedThrottleCount() {
+        return injectedThrottleCount.get();
+    }
+
+    private MockResponse Respond(RecordedRequest request) {
+        String path = request.getRequestUrl().encodedPath();
+        String countedPath = path.startsWith(IMAGES_PATH) ? IMAGES_PATH
+                : path.startsWith(PLAYLISTS_PATH) ? path.endsWith("/tracks") ? PLAYLIST_TRACKS_PATH : PLAYLISTS_PATH
+                : path;
+        requestCounts.computeIfAbsent(countedPath, k -> new AtomicLong()).incrementAndGet();
+
+        // The token endpoint never fails: a failed refresh falls back to the interactive login, which opens a browser
+        MockResponse response = path.equals(TOKEN_PATH) ? null : CreateFailure();
+        if (response == null) {
+            if (path.equals(TRACKS_PATH)) {
+                response = CreateTracksResponse(request.getRequestUrl().queryParameter("ids"));
+            } else if (path.equals(TOKEN_PATH)) {
+                response = new MockResponse().setBody("{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\","
+                        + "\"expires_in\":3600,\"scope\":\"\",\"refresh_token\":\"stub-refresh-token\"}");
+            } else if (path.startsWith(PLAYLISTS_PATH) && path.endsWith("/tracks")) {
+                response = CreatePlaylistTracksResponse(request.getRequestUrl());
+            } else if (path.startsWith(PLAYLISTS_PATH)) {
+                response = CreatePlaylistResponse(path.substring(PLAYLISTS_PATH.length()));
+            } else if (path.startsWith(IMAGES_PATH)) {
+                response = new MockResponse().setBody(new Buffer().write(albumArt)).setHeader("Content-Type", "image/png");
+            } else {
+                response = new MockResponse().setResponseCode(404);
+            }
+        }
+
+        long delayMillis = latencyMillis + (latencyJitterMillis > 0 ? NextLong(latencyJitterMillis) : 0);
+        return response.setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private MockResponse CreateFailure() {
+        double roll;
+        synchronized (random) {
+            roll = random.nextDouble();
+        }
+        if (roll < errorRate) {
+            injectedErrorCount.incrementAndGet();
+            return new MockResponse().setResponseCode(500);
+        }
+        if (roll < errorRate + throttleRate) {
+            injectedThrottleCount.incrementAndGet();
+            return new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+        }
+        return null;
+    }
+
+    private MockResponse CreateTracksResponse(String ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new MockResponse().setResponseCode(400);
+        }
+
+        StringBuilder json = new StringBuilder("{\"tracks\":[");
+        String[] trackIds = ids.split(",");
+        for (int i = 0; i < trackIds.length; i++) {
+            String id = trackIds[i];
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"Track ").append(id).append("\",")
+                    .append("\"artists\":[{\"name\":\"Artist ").append(id.length() > 2 ? id.substring(0, 2) : id).append("\"}],")
+                    .append("\"uri\":\"spotify:track:").append(id).append("\",")
+                    .append("\"external_urls\":{\"spotify\":\"https://open.spotify.com/track/").append(id).append("\"},")
+                    .append("\"album\":{\"images\":[{\"height\":64,\"width\":64,\"url\":\"")
+                    .append(server.url(IMAGES_PATH + id + ".png")).append("\"}]}}");
+        }
+        json.append("]}");
+        return new MockResponse().setBody(json.toString()).setHeader("Content-Type", "application/json");
+    }
+
+    private MockResponse CreatePlaylistResponse(String id) {
+        String json = "{\"name\":\"Playlist " + id + "\",\"owner\":{\"display_name\":\"Clanmate\"},"
+                + "\"images\":[{\"height\":64,\"width\":64,\"url\":\"" + server.url(IMAGES_PATH + id + ".png") + "\"}],"
+                + "\"uri\":\"spotify:playlist:" + id + "\","
+                + "\"external_urls\":{\"spotify\":\"https://open.spotify.com/playlist/" + id + "\"},"
+                + "\"tracks\":{\"total\":" + PLAYLIST_TRACK_COUNT + "}}";
+        return new MockResponse().setBody(json).setHeader("Content-Type", "application/json");
+    }
+
+    private MockResponse CreatePlaylistTracksResponse(HttpUrl url) {
+        int offset = Integer.parseInt(url.queryParameter("offset"));
+        int limit = Integer.parseInt(url.queryParameter("limit"));
+        StringBuilder json = new StringBuilder("{\"total\":").append(PLAYLIST_TRACK_COUNT).append(",\"items\":[");
+        for (int i = offset; i < Math.min(PLAYLIST_TRACK_COUNT, offset + limit); i++) {
+            if (i > offset) {
+                json.append(',');
+            }
+            json.append("{\"track\":{\"name\":\"Track ").append(i).append("\",\"artists\":[{\"name\":\"Artist\"}],")
+                    .append("\"uri\":\"spotify:track:").append(i).append("\"}}");
+        }
+        json.append("]}");
+        return new MockResponse().setBody(json.toString()).setHeader("Content-Type", "application/json");
+    }
+
+    private long NextLong(long bound) {
+        synchronized (random) {
+            return (long) (random.nextDouble() * bound);
+        }
+    }
+
+    private static byte[] CreateAlbumArt() throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                image.setRGB(x, y, (x * 4) << 16 | (y * 4) << 8 | 0x80);
+            }
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,127 @@
+package com.sharelinks.utilities;
+
+import com.google.inject.Guice;
+import com.google.inject.testing.fieldbinder.Bind;
+import com.google.inject.testing.fieldbinder.BoundFieldModule;
+import com.sharelinks.ShareLinksConfig;
+import okhttp3.OkHttpClient;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImageCacheTest {
+    private static final int ICON_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // The smallest budget, which still holds 32 icons
+    @Bind
+    private final ShareLinksConfig config = new ShareLinksConfig() {
+        @Override
+        public int albumArtMemoryBudgetKb() {
+            return 0;
+        }
+    };
+
+    @Bind
+    private final ShareLinksMetrics metrics = new ShareLinksMetrics();
+
+    @Bind
+    private final OkHttpClient okHttpClient = new OkHttpClient();
+
+    @Bind
+    private KeyValueStore keyValueStore;
+
+    private ImageCache imageCache;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new KeyValueStore(temporaryFolder.newFolder());
+        imageCache = Guice.createInjector(BoundFieldModule.of(this)).getInstance(ImageCache.class);
+    }
+
+    @Test
+    public void countsDecodedRasterBytes() throws Exception {
+        // JPEG decodes to 3 bytes per pixel, PNG with alpha to 4
+        StoreImage("opaque", BufferedImage.TYPE_INT_RGB, "jpg");
+        StoreImage("translucent", BufferedImage.TYPE_INT_ARGB, "png");
+
+        assertNotNull(imageCache.GetImage("opaque"));
+        assertEquals(ICON_SIZE * ICON_SIZE * 3, imageCache.GetMemoryBytes());
+        assertNotNull(imageCache.GetImage("translucent"));
+        assertEquals(ICON_SIZE * ICON_SIZE * 7, imageCache.GetMemoryBytes());
+    }
+
+    @Test
+    public void dropsLeastRecentlyViewedArtAndReloadsItFromDisk() throws Exception {
+        int fitting = (int) (imageCache.GetBudgetBytes() / (ICON_SIZE * ICON_SIZE * 4));
+        for (int i = 0; i <= fitting; i++) {
+            StoreImage("art" + i, BufferedImage.TYPE_INT_ARGB, "png");
+        }
+        for (int i = 0; i < fitting; i++) {
+            assertNotNull(imageCache.GetImage("art" + i));
+        }
+
+        // Painting the first art keeps it, so the second is dropped instead
+        assertNotNull(imageCache.GetCachedImage("art0"));
+        assertNotNull(imageCache.GetImage("art" + fitting));
+        assertNotNull(imageCache.GetCachedImage("art0"));
+        assertNull(imageCache.GetCachedImage("art1"));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.IMAGE_EVICTED));
+        assertTrue(imageCache.GetMemoryBytes() <= imageCache.GetBudgetBytes());
+
+        long diskHits = imageCache.GetDiskHitCount();
+        assertNotNull(imageCache.GetImage("art1"));
+        assertEquals(diskHits + 1, imageCache.GetDiskHitCount());
+        assertEquals(0, imageCache.GetNetworkLoadCount());
+    }
+
+    @Test
+    public void trimsLeastRecentlyUsedFilesFromDisk() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            StoreImage("art" + i, BufferedImage.TYPE_INT_ARGB, "png");
+        }
+        keyValueStore.Flush();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            GetImageFile("art" + i).setLastModified(now - (4 - i) * 60_000L);
+        }
+
+        // Viewing the oldest art from disk makes it the most recently used
+        assertNotNull(imageCache.GetImage("art0"));
+        long fileBytes = GetImageFile("art1").length();
+        assertEquals(0, imageCache.TrimDisk(4 * fileBytes));
+        assertEquals(2, imageCache.TrimDisk(2 * fileBytes));
+
+        assertFalse(GetImageFile("art1").exists());
+        assertFalse(GetImageFile("art2").exists());
+        assertTrue(GetImageFile("art0").exists());
+        assertTrue(GetImageFile("art3").exists());
+        assertEquals(2, metrics.GetCount(ShareLinksMetrics.IMAGE_DISK_EVICTED));
+    }
+
+    private File GetImageFile(String imageUrl) {
+        return keyValueStore.GetFile(ImageCache.GetImageKey(imageUrl));
+    }
+
+    private void StoreImage(String imageUrl, int type, String format) throws IOException {
+        BufferedImage image = new BufferedImage(ICON_SIZE, ICON_SIZE, type);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        keyValueStore.PutBytes(ImageCache.GetImageKey(imageUrl), bytes.toByteArray());
+    }
+}
@@ -0,0 +1,146 @@
+package com.sharelinks.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class KeyValueStoreTest {
+    private static final String KEY = "value";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private KeyValueStore keyValueStore;
+
+    // Counts the values written to disk, and lets a test act while a value is being written
+    private int writeCount;
+    private Runnable onWrite = () -> {
+    };
+    private final KeyValueStore.Codec<String> codec = new KeyValueStore.Codec<String>() {
+        @Override
+        public void Write(DataOutputStream out, String value) throws IOException {
+            writeCount++;
+            onWrite.run();
+            KeyValueStore.WriteString(out, value);
+        }
+
+        @Override
+        public String Read(DataInputStream in) throws IOException {
+            return KeyValueStore.ReadString(in);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder();
+        keyValueStore = new KeyValueStore(directory);
+        keyValueStore.Start();
+    }
+
+    @After
+    public void tearDown() {
+        keyValueStore.Shutdown();
+    }
+
+    @Test
+    public void writesPendingValuesBeforeShutdownReturns() {
+        keyValueStore.Put(KEY, "saved", codec);
+        keyValueStore.Shutdown();
+
+        assertEquals("saved", new KeyValueStore(directory).Get(KEY, codec));
+    }
+
+    @Test
+    public void writesValuesPutBeforeStart() {
+        KeyValueStore stoppedStore = new KeyValueStore(directory);
+        stoppedStore.Put(KEY, "early", codec);
+        assertEquals("early", stoppedStore.Get(KEY, codec));
+
+        stoppedStore.Start();
+        stoppedStore.Shutdown();
+        assertEquals(1, writeCount);
+        assertEquals("early", new KeyValueStore(directory).Get(KEY, codec));
+    }
+
+    @Test
+    public void coalescesRapidPutsIntoOneWrite() {
+        for (int i = 0; i < 100; i++) {
+            keyValueStore.Put(KEY, "value " + i, codec);
+        }
+        assertEquals("value 99", keyValueStore.Get(KEY, codec));
+
+        keyValueStore.Flush();
+        assertEquals(1, writeCount);
+        assertEquals("value 99", new KeyValueStore(directory).Get(KEY, codec));
+    }
+
+    @Test
+    public void keepsNewerPutMadeWhileFlushing() {
+        keyValueStore.Put(KEY, "older", codec);
+        onWrite = () -> {
+            onWrite = () -> {
+            };
+            keyValueStore.Put(KEY, "newer", codec);
+        };
+
+        keyValueStore.Flush();
+        assertEquals("older", new KeyValueStore(directory).Get(KEY, codec));
+
+        // The newer value is still pending, so the next flush writes it
+        keyValueStore.Flush();
+        assertEquals(2, writeCount);
+        assertEquals("newer", new KeyValueStore(directory).Get(KEY, codec));
+    }
+
+    @Test
+    public void replacesFilesAtomically() throws Exception {
+        keyValueStore.WriteAtomically(KEY, out -> out.write("old".getBytes(StandardCharsets.UTF_8)));
+        File file = keyValueStore.GetFile(KEY);
+        File tempFile = new File(file.getPath() + ".tmp");
+        assertFalse(tempFile.exists());
+
+        try {
+            keyValueStore.WriteAtomically(KEY, out -> {
+                out.write("half".getBytes(StandardCharsets.UTF_8));
+                throw new IOException("Disk full");
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+
+        // The failed write left the old file whole and cleaned up after itself
+        assertArrayEquals("old".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+        assertFalse(tempFile.exists());
+
+        keyValueStore.WriteAtomically(KEY, out -> out.write("new".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals("new".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+        assertFalse(tempFile.exists());
+    }
+
+    @Test
+    public void servesPendingBytesBeforeTheyAreWritten() {
+        byte[] bytes = {1, 2, 3};
+        keyValueStore.PutBytes(KEY, bytes);
+
+        assertArrayEquals(bytes, keyValueStore.GetBytes(KEY));
+        assertFalse(keyValueStore.GetFile(KEY).exists());
+        keyValueStore.Flush();
+        assertArrayEquals(bytes, new KeyValueStore(directory).GetBytes(KEY));
+    }
+}
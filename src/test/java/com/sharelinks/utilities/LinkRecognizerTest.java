@@ -0,0 +1,112 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkMatch;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LinkRecognizerTest {
+    private static final String TRACK_ID = "4uLU6hMCjMI75M1A2tKUQC";
+    private static final String VIDEO_ID = "dQw4w9WgXcQ";
+
+    private final LinkRecognizer linkRecognizer = new LinkRecognizer();
+    private final LinkMatch match = new LinkMatch();
+
+    @Test
+    public void recognizesSpotifyLinks() {
+        AssertRecognized("!Share https://open.spotify.com/track/" + TRACK_ID, LinkKind.SPOTIFY_TRACK, TRACK_ID,
+                "https://open.spotify.com/track/" + TRACK_ID);
+        AssertRecognized("!Share https://open.spotify.com/album/1DFixLWuPkv3KT3TnV35m3", LinkKind.SPOTIFY_ALBUM,
+                "1DFixLWuPkv3KT3TnV35m3", "https://open.spotify.com/album/1DFixLWuPkv3KT3TnV35m3");
+        AssertRecognized("!Share open.spotify.com/playlist/37i9dQZF1DXcBWIGoYBM5M", LinkKind.SPOTIFY_PLAYLIST,
+                "37i9dQZF1DXcBWIGoYBM5M", "open.spotify.com/playlist/37i9dQZF1DXcBWIGoYBM5M");
+        AssertRecognized("!Share spotify:track:" + TRACK_ID, LinkKind.SPOTIFY_TRACK, TRACK_ID, "spotify:track:" + TRACK_ID);
+    }
+
+    @Test
+    public void recognizesYouTubeLinks() {
+        AssertRecognized("!Share https://www.youtube.com/watch?v=" + VIDEO_ID, LinkKind.YOUTUBE_VIDEO, VIDEO_ID,
+                "https://www.youtube.com/watch?v=" + VIDEO_ID);
+        AssertRecognized("!Share http://m.youtube.com/watch?v=" + VIDEO_ID, LinkKind.YOUTUBE_VIDEO, VIDEO_ID,
+                "http://m.youtube.com/watch?v=" + VIDEO_ID);
+        AssertRecognized("!Share https://youtu.be/" + VIDEO_ID, LinkKind.YOUTUBE_VIDEO, VIDEO_ID, "https://youtu.be/" + VIDEO_ID);
+        // YouTube ids may hold '-' and '_'
+        AssertRecognized("!Share youtu.be/a-b_c", LinkKind.YOUTUBE_VIDEO, "a-b_c", "youtu.be/a-b_c");
+    }
+
+    @Test
+    public void ignoresCaseOfCommandAndPrefix() {
+        AssertRecognized("!SHARE HTTPS://OPEN.SPOTIFY.COM/TRACK/" + TRACK_ID, LinkKind.SPOTIFY_TRACK, TRACK_ID,
+                "HTTPS://OPEN.SPOTIFY.COM/TRACK/" + TRACK_ID);
+    }
+
+    @Test
+    public void skipsLeadingAndNonBreakingWhitespace() {
+        AssertRecognized("  \t!share\u00A0\u00A0https://youtu.be/" + VIDEO_ID + "  ", LinkKind.YOUTUBE_VIDEO, VIDEO_ID,
+                "https://youtu.be/" + VIDEO_ID);
+    }
+
+    @Test
+    public void keepsQueryStringInLinkButNotInId() {
+        AssertRecognized("!Share https://open.spotify.com/track/" + TRACK_ID + "?si=a1b2c3 nice song", LinkKind.SPOTIFY_TRACK,
+                TRACK_ID, "https://open.spotify.com/track/" + TRACK_ID + "?si=a1b2c3");
+        AssertRecognized("!Share https://www.youtube.com/watch?v=" + VIDEO_ID + "&t=42s", LinkKind.YOUTUBE_VIDEO, VIDEO_ID,
+                "https://www.youtube.com/watch?v=" + VIDEO_ID + "&t=42s");
+        // Spotify ids are base62, so the id ends at the first other character
+        AssertRecognized("!Share spotify:track:abc-def", LinkKind.SPOTIFY_TRACK, "abc", "spotify:track:abc-def");
+    }
+
+    @Test
+    public void rejectsTruncatedLinks() {
+        AssertNotRecognized("!Share");
+        AssertNotRecognized("!Share ");
+        AssertNotRecognized("!Share https://open.spotify.co");
+        AssertNotRecognized("!Share https://open.spotify.com/track/");
+        AssertNotRecognized("!Share https://open.spotify.com/track/?si=a1b2c3");
+        AssertNotRecognized("!Share https://www.youtube.com/watch?v=");
+    }
+
+    @Test
+    public void rejectsNonLinkText() {
+        AssertNotRecognized("");
+        AssertNotRecognized("hello there");
+        AssertNotRecognized("look !Share https://youtu.be/" + VIDEO_ID);
+        AssertNotRecognized("!Shares https://youtu.be/" + VIDEO_ID);
+        AssertNotRecognized("!Sharehttps://youtu.be/" + VIDEO_ID);
+        AssertNotRecognized("!Share https://example.com/track/" + TRACK_ID);
+        AssertNotRecognized("!Share https://open.spotify.com/artist/" + TRACK_ID);
+        AssertNotRecognized("!Share my favourite song");
+    }
+
+    @Test
+    public void recognizesBareShareCommand() {
+        assertTrue(linkRecognizer.IsShareCommand("!Share"));
+        assertTrue(linkRecognizer.IsShareCommand("  !sHaRe\u00A0"));
+        assertFalse(linkRecognizer.IsShareCommand("!Share https://youtu.be/" + VIDEO_ID));
+        assertFalse(linkRecognizer.IsShareCommand("!Shar"));
+        assertFalse(linkRecognizer.IsShareCommand("!Shares"));
+    }
+
+    @Test
+    public void recognizesLinkAtOffset() {
+        String text = "copied: https://open.spotify.com/album/1DFixLWuPkv3KT3TnV35m3";
+        assertTrue(linkRecognizer.RecognizeLink(text, "copied:".length(), match));
+        assertEquals(LinkKind.SPOTIFY_ALBUM, match.getKind());
+        assertEquals("https://open.spotify.com/album/1DFixLWuPkv3KT3TnV35m3", match.getLink(text));
+        assertFalse(linkRecognizer.RecognizeLink(text, 0, match));
+    }
+
+    private void AssertRecognized(String message, LinkKind kind, String id, String link) {
+        assertTrue(message, linkRecognizer.Recognize(message, match));
+        assertEquals(kind, match.getKind());
+        assertEquals(id, match.getId(message));
+        assertEquals(link, match.getLink(message));
+    }
+
+    private void AssertNotRecognized(String message) {
+        assertFalse(message, linkRecognizer.Recognize(message, match));
+    }
+}
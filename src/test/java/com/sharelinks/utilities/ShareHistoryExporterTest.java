@@ -0,0 +1,163 @@
+package com.sharelinks.utilities;
+
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.google.inject.testing.fieldbinder.Bind;
+import com.google.inject.testing.fieldbinder.BoundFieldModule;
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.ExportFormat;
+import com.sharelinks.models.HistoryExportFilter;
+import com.sharelinks.models.LinkHistoryEntry;
+import com.sharelinks.models.LinkItemType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShareHistoryExporterTest {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Bind
+    private final ShareLinksConfig config = new ShareLinksConfig() {
+    };
+
+    @Bind
+    private final ShareLinksMetrics metrics = new ShareLinksMetrics();
+
+    @Bind
+    private KeyValueStore keyValueStore;
+
+    private ShareHistoryExporter exporter;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new KeyValueStore(temporaryFolder.newFolder());
+        exporter = Guice.createInjector(BoundFieldModule.of(this)).getInstance(ShareHistoryExporter.class);
+        exporter.Start();
+    }
+
+    @After
+    public void tearDown() {
+        exporter.Shutdown();
+    }
+
+    @Test
+    public void exportsMatchingEntriesInEachFormat() throws Exception {
+        WriteHistory(
+                CreateEntry(LinkItemType.SPOTIFY_LINK, "SPOTIFY_TRACK:old", "Old Song", NOW - 10 * DAY_MILLIS),
+                CreateEntry(LinkItemType.SPOTIFY_LINK, "SPOTIFY_TRACK:abc", "Song, \"Live\"", NOW),
+                CreateEntry(LinkItemType.SPOTIFY_LINK, "SPOTIFY_PLAYLIST:def", "=Mix", NOW),
+                CreateEntry(LinkItemType.YOUTUBE_LINK, "YOUTUBE_VIDEO:xyz", "Video", NOW));
+        HistoryExportFilter filter = new HistoryExportFilter(NOW - DAY_MILLIS, LinkItemType.SPOTIFY_LINK);
+
+        List<String> lines = Export(ExportFormat.JSON_LINES, filter, 2);
+        assertEquals(2, lines.size());
+        assertEquals("SPOTIFY_TRACK:abc", new Gson().fromJson(lines.get(0), LinkHistoryEntry.class).key);
+
+        lines = Export(ExportFormat.CSV, filter, 2);
+        assertEquals("timestamp,provider,kind,title,content,sender,url", lines.get(0));
+        assertTrue(lines.get(1).contains(",Spotify,Spotify Track,\"Song, \"\"Live\"\"\",Artist,Player,https://example.com/abc"));
+        assertTrue(lines.get(2).contains(",'=Mix,"));
+
+        lines = Export(ExportFormat.M3U, filter, 2);
+        assertEquals("#EXTM3U", lines.get(0));
+        assertEquals("#EXTINF:-1,Artist - Song, \"Live\"", lines.get(1));
+        assertEquals("spotify:track:abc", lines.get(2));
+        assertEquals("spotify:playlist:def", lines.get(4));
+    }
+
+    @Test
+    public void streamsLargeHistoryWithProgress() throws Exception {
+        int count = 100_000;
+        File historyFile = keyValueStore.GetFile("history.jsonl");
+        historyFile.getParentFile().mkdirs();
+        Gson gson = new Gson();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(historyFile), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < count; i++) {
+                LinkItemType type = i % 2 == 0 ? LinkItemType.SPOTIFY_LINK : LinkItemType.YOUTUBE_LINK;
+                writer.write(gson.toJson(CreateEntry(type, "SPOTIFY_TRACK:" + i, "Song " + i, NOW + i)));
+                writer.write('\n');
+            }
+        }
+
+        List<Double> progress = new ArrayList<>();
+        File destination = new File(temporaryFolder.getRoot(), "export.csv");
+        int exported = exporter.Export(destination, ExportFormat.CSV, new HistoryExportFilter(0, LinkItemType.YOUTUBE_LINK), progress::add)
+                .get(30, TimeUnit.SECONDS);
+
+        assertEquals(count / 2, exported);
+        assertEquals(count / 2 + 1, Files.readAllLines(destination.toPath()).size());
+        assertTrue(progress.size() > 1);
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) >= progress.get(i - 1));
+        }
+        assertEquals(1, progress.get(progress.size() - 1), 0);
+        assertEquals(1, metrics.GetHistogram(ShareLinksMetrics.HISTORY_EXPORT).GetCount());
+    }
+
+    @Test
+    public void failedExportLeavesNoFile() throws Exception {
+        WriteHistory(CreateEntry(LinkItemType.SPOTIFY_LINK, "SPOTIFY_TRACK:abc", "Song", NOW));
+        File destination = new File(temporaryFolder.getRoot(), "missing" + File.separator + "export.jsonl");
+
+        try {
+            exporter.Export(destination, ExportFormat.JSON_LINES, HistoryExportFilter.ALL, fraction -> {
+            }).get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertFalse(destination.getParentFile().exists());
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.HISTORY_EXPORT_FAILED));
+    }
+
+    private List<String> Export(ExportFormat format, HistoryExportFilter filter, int expected) throws Exception {
+        File destination = new File(temporaryFolder.getRoot(), "export." + format.extension);
+        int exported = exporter.Export(destination, format, filter, fraction -> {
+        }).get(30, TimeUnit.SECONDS);
+        assertEquals(expected, exported);
+        assertFalse(new File(destination.getPath() + ".part").exists());
+        return Files.readAllLines(destination.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private void WriteHistory(LinkHistoryEntry... entries) throws IOException {
+        File historyFile = keyValueStore.GetFile("history.jsonl");
+        historyFile.getParentFile().mkdirs();
+        Gson gson = new Gson();
+        StringBuilder log = new StringBuilder();
+        for (LinkHistoryEntry entry : entries) {
+            log.append(gson.toJson(entry)).append('\n');
+        }
+        Files.write(historyFile.toPath(), log.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LinkHistoryEntry CreateEntry(LinkItemType type, String key, String title, long timestamp) {
+        LinkHistoryEntry entry = new LinkHistoryEntry();
+        entry.type = type.name();
+        entry.title = title;
+        entry.content = "Artist";
+        entry.url = "https://example.com/" + key.substring(key.indexOf(':') + 1);
+        entry.sender = "Player";
+        entry.key = key;
+        entry.timestamp = timestamp;
+        return entry;
+    }
+}
@@ -0,0 +1,184 @@
+package com.sharelinks.utilities;
+
+import com.google.gson.Gson;
+import com.google.inject.Guice;
+import com.google.inject.testing.fieldbinder.Bind;
+import com.google.inject.testing.fieldbinder.BoundFieldModule;
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkHistoryEntry;
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkItemType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShareHistoryTest {
+    private static final String HISTORY_KEY = "history.jsonl";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private int historyRetention = 10000;
+
+    @Bind
+    private final ShareLinksConfig config = new ShareLinksConfig() {
+        @Override
+        public int historyRetention() {
+            return historyRetention;
+        }
+    };
+
+    @Bind
+    private KeyValueStore keyValueStore;
+
+    private ShareHistory shareHistory;
+    private File historyFile;
+
+    @Before
+    public void setUp() throws Exception {
+        keyValueStore = new KeyValueStore(temporaryFolder.newFolder());
+        shareHistory = Guice.createInjector(BoundFieldModule.of(this)).getInstance(ShareHistory.class);
+        historyFile = keyValueStore.GetFile(HISTORY_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        shareHistory.Shutdown();
+    }
+
+    @Test
+    public void readsLastLinesWithAndWithoutTrailingNewline() throws Exception {
+        Write("a\nb\nc\n");
+        assertEquals(Arrays.asList("b", "c"), ShareHistory.ReadLastLines(historyFile, 2));
+
+        Write("a\nb\nc");
+        assertEquals(Arrays.asList("b", "c"), ShareHistory.ReadLastLines(historyFile, 2));
+        assertEquals(Collections.singletonList("c"), ShareHistory.ReadLastLines(historyFile, 1));
+    }
+
+    @Test
+    public void readsEveryLineWhenAskedForMoreThanExist() throws Exception {
+        Write("a\nb\nc\n");
+        assertEquals(Arrays.asList("a", "b", "c"), ShareHistory.ReadLastLines(historyFile, 100));
+
+        Write("");
+        assertEquals(Collections.emptyList(), ShareHistory.ReadLastLines(historyFile, 100));
+        assertEquals(Collections.emptyList(), ShareHistory.ReadLastLines(new File(historyFile.getPath() + ".missing"), 100));
+    }
+
+    @Test
+    public void readsLinesCrossingChunkBoundaries() throws Exception {
+        // Lines of 3000 bytes, so that chunks of 8192 bytes end inside lines and right after newlines alike
+        StringBuilder text = new StringBuilder();
+        String[] lines = new String[20];
+        for (int i = 0; i < lines.length; i++) {
+            char[] line = new char[2999];
+            Arrays.fill(line, (char) ('a' + i));
+            lines[i] = new String(line);
+            text.append(lines[i]).append('\n');
+        }
+        Write(text.toString());
+
+        for (int count = 1; count <= lines.length; count++) {
+            assertEquals(Arrays.asList(lines).subList(lines.length - count, lines.length),
+                    ShareHistory.ReadLastLines(historyFile, count));
+        }
+    }
+
+    @Test
+    public void restoresMostRecentEntriesNewestFirst() throws Exception {
+        WriteEntries(0, 5);
+        Files.write(historyFile.toPath(), "not json\n{}\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        shareHistory.Start();
+
+        // The unreadable and incomplete lines are skipped
+        List<LinkItem> items = shareHistory.LoadRecent(4).get(10, TimeUnit.SECONDS);
+        assertEquals(2, items.size());
+        assertEquals("Song 4", items.get(0).getTitle());
+        assertEquals("Song 3", items.get(1).getTitle());
+    }
+
+    @Test
+    public void writesPendingEntriesBeforeShutdownReturns() throws Exception {
+        shareHistory.Start();
+        shareHistory.Append(CreateItem(0));
+        shareHistory.Append(CreateItem(1));
+        shareHistory.Shutdown();
+
+        List<String> lines = Files.readAllLines(historyFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("Song 1", new Gson().fromJson(lines.get(1), LinkHistoryEntry.class).title);
+    }
+
+    @Test
+    public void compactsDownToRetentionOnStart() throws Exception {
+        historyRetention = 10;
+        WriteEntries(0, 150);
+        shareHistory.Start();
+        shareHistory.FlushPending().get(10, TimeUnit.SECONDS);
+
+        List<String> lines = Files.readAllLines(historyFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(10, lines.size());
+        assertEquals("Song 140", new Gson().fromJson(lines.get(0), LinkHistoryEntry.class).title);
+        assertEquals("Song 149", new Gson().fromJson(lines.get(9), LinkHistoryEntry.class).title);
+    }
+
+    @Test
+    public void compactsOnceAppendsOutgrowRetention() throws Exception {
+        // Retention plus the minimum slack of 100 lines is tolerated before compacting
+        historyRetention = 10;
+        WriteEntries(0, 105);
+        shareHistory.Start();
+        shareHistory.FlushPending().get(10, TimeUnit.SECONDS);
+        assertEquals(105, Files.readAllLines(historyFile.toPath()).size());
+
+        for (int i = 105; i < 111; i++) {
+            shareHistory.Append(CreateItem(i));
+        }
+        shareHistory.FlushPending().get(10, TimeUnit.SECONDS);
+
+        List<String> lines = Files.readAllLines(historyFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(10, lines.size());
+        assertEquals("Song 110", new Gson().fromJson(lines.get(9), LinkHistoryEntry.class).title);
+    }
+
+    private void Write(String text) throws IOException {
+        historyFile.getParentFile().mkdirs();
+        Files.write(historyFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void WriteEntries(int from, int to) throws IOException {
+        Gson gson = new Gson();
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            LinkHistoryEntry entry = new LinkHistoryEntry();
+            entry.type = LinkItemType.SPOTIFY_LINK.name();
+            entry.title = "Song " + i;
+            entry.url = "https://open.spotify.com/track/" + i;
+            entry.key = "SPOTIFY_TRACK:" + i;
+            entry.timestamp = i;
+            text.append(gson.toJson(entry)).append('\n');
+        }
+        Write(text.toString());
+    }
+
+    private static LinkItem CreateItem(int i) {
+        return new LinkItem(LinkItemType.SPOTIFY_LINK, "Song " + i, "Artist", "https://open.spotify.com/track/" + i,
+                null, LocalDateTime.now(), "Player", "SPOTIFY_TRACK:" + i, false);
+    }
+}
@@ -0,0 +1,219 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.ShareLinksConfig;
+import com.sharelinks.models.LinkItem;
+import com.sharelinks.models.LinkKind;
+import com.sharelinks.models.LinkPriority;
+import com.sharelinks.models.PendingShare;
+import com.sharelinks.models.ShareOverflowPolicy;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShareIngestQueueTest {
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private final List<PendingShare> handled = new ArrayList<>();
+    private final List<CompletableFuture<Void>> resolutions = new ArrayList<>();
+
+    private ShareLinksMetrics metrics;
+    private int maxPendingShares = 3;
+    private int sharesPerPlayerPerMinute;
+    private ShareOverflowPolicy overflowPolicy = ShareOverflowPolicy.DROP_NEWEST;
+    private ShareIngestQueue queue;
+
+    @Before
+    public void setUp() {
+        metrics = new ShareLinksMetrics();
+        queue = new ShareIngestQueue(new ShareLinksConfig() {
+            @Override
+            public int maxPendingShares() {
+                return maxPendingShares;
+            }
+
+            @Override
+            public int sharesPerPlayerPerMinute() {
+                return sharesPerPlayerPerMinute;
+            }
+
+            @Override
+            public ShareOverflowPolicy shareOverflowPolicy() {
+                return overflowPolicy;
+            }
+        }, metrics);
+    }
+
+    @Test
+    public void dropsNewShareWhenFull() {
+        Fill("a", "b", "c");
+
+        assertFalse(queue.Offer(CreateShare("d", "Player", LinkPriority.PUBLIC), 0));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+        assertEquals(3, queue.GetQueuedCount());
+    }
+
+    @Test
+    public void dropsOldestLeastUrgentShareWhenFull() {
+        overflowPolicy = ShareOverflowPolicy.DROP_OLDEST;
+        queue.Offer(CreateShare("friend", "Friend", LinkPriority.FRIENDS), 0);
+        queue.Offer(CreateShare("a", "Player", LinkPriority.PUBLIC), 0);
+        queue.Offer(CreateShare("b", "Player", LinkPriority.PUBLIC), 0);
+
+        assertTrue(queue.Offer(CreateShare("c", "Player", LinkPriority.PUBLIC), 0));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+        assertEquals(3, queue.GetQueuedCount());
+
+        HandOutAll();
+        assertEquals(3, handled.size());
+        assertEquals("friend", handled.get(0).getId());
+        assertEquals("b", handled.get(1).getId());
+        assertEquals("c", handled.get(2).getId());
+    }
+
+    @Test
+    public void keepsMoreUrgentSharesOverLessUrgentNewShare() {
+        overflowPolicy = ShareOverflowPolicy.DROP_OLDEST;
+        for (String id : new String[]{"a", "b", "c"}) {
+            queue.Offer(CreateShare(id, "Friend", LinkPriority.FRIENDS), 0);
+        }
+
+        assertFalse(queue.Offer(CreateShare("d", "Stranger", LinkPriority.PUBLIC), 0));
+        assertEquals(3, queue.GetQueuedCount());
+    }
+
+    @Test
+    public void collapsesRepeatOfWaitingLinkWhenFull() {
+        overflowPolicy = ShareOverflowPolicy.COLLAPSE_REPEATS;
+        Fill("a", "b", "c");
+
+        assertTrue(queue.Offer(CreateShare("b", "Other", LinkPriority.PUBLIC), 0));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_COLLAPSED));
+        assertEquals(0, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+        assertEquals(3, queue.GetQueuedCount());
+
+        // A link that is not waiting still gets in, at the expense of the oldest share
+        assertTrue(queue.Offer(CreateShare("d", "Other", LinkPriority.PUBLIC), 0));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+
+        // The repeat is handed out with the share it was folded into, keeping its sender
+        HandOutAll();
+        PendingShare share = handled.get(0);
+        assertEquals("b", share.getId());
+        assertEquals(1, share.getRepeats().size());
+        assertEquals("Other", share.getRepeats().get(0).getSender());
+    }
+
+    @Test
+    public void shedsRepeatsBeyondTheCap() {
+        overflowPolicy = ShareOverflowPolicy.COLLAPSE_REPEATS;
+        maxPendingShares = 1;
+        Fill("a");
+
+        for (int i = 0; i < ShareIngestQueue.MAX_REPEATS_PER_SHARE; i++) {
+            assertTrue(queue.Offer(CreateShare("a", "Other " + i, LinkPriority.PUBLIC), 0));
+        }
+        assertFalse(queue.Offer(CreateShare("a", "One Too Many", LinkPriority.PUBLIC), 0));
+        assertEquals(ShareIngestQueue.MAX_REPEATS_PER_SHARE, metrics.GetCount(ShareLinksMetrics.INGEST_COLLAPSED));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+
+        HandOutAll();
+        assertEquals(ShareIngestQueue.MAX_REPEATS_PER_SHARE, handled.get(0).getRepeats().size());
+    }
+
+    @Test
+    public void dropsOldestWhenRepeatedShareWasHandedOut() {
+        overflowPolicy = ShareOverflowPolicy.COLLAPSE_REPEATS;
+        maxPendingShares = 1;
+        Fill("a");
+        HandOutAll();
+        Fill("b");
+
+        assertTrue(queue.Offer(CreateShare("a", "Other", LinkPriority.PUBLIC), 0));
+        assertEquals(0, metrics.GetCount(ShareLinksMetrics.INGEST_COLLAPSED));
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_DROPPED));
+    }
+
+    @Test
+    public void rateLimitsOtherPlayersButNotOwnShares() {
+        maxPendingShares = 100;
+        sharesPerPlayerPerMinute = 2;
+
+        assertTrue(queue.Offer(CreateShare("a", "Spammer", LinkPriority.PUBLIC), 0));
+        assertTrue(queue.Offer(CreateShare("b", "Spammer", LinkPriority.PUBLIC), 0));
+        assertFalse(queue.Offer(CreateShare("c", "Spammer", LinkPriority.PUBLIC), 0));
+        assertTrue(queue.Offer(CreateShare("d", "Someone Else", LinkPriority.PUBLIC), 0));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.Offer(CreateShare("own" + i, "Me", LinkPriority.OWN), 0));
+        }
+        assertEquals(1, metrics.GetCount(ShareLinksMetrics.INGEST_RATE_LIMITED));
+
+        // Half a minute later, one more share is allowed
+        long halfMinute = TimeUnit.SECONDS.toNanos(30);
+        assertTrue(queue.Offer(CreateShare("e", "Spammer", LinkPriority.PUBLIC), halfMinute));
+        assertFalse(queue.Offer(CreateShare("f", "Spammer", LinkPriority.PUBLIC), halfMinute));
+    }
+
+    @Test
+    public void handsOutMostUrgentSharesFirst() {
+        maxPendingShares = 10;
+        queue.Offer(CreateShare("public", "Stranger", LinkPriority.PUBLIC), 0);
+        queue.Offer(CreateShare("friend", "Friend", LinkPriority.FRIENDS), 0);
+        queue.Offer(CreateShare("own", "Me", LinkPriority.OWN), 0);
+
+        HandOutAll();
+        assertEquals("own", handled.get(0).getId());
+        assertEquals("friend", handled.get(1).getId());
+        assertEquals("public", handled.get(2).getId());
+    }
+
+    @Test
+    public void limitsSharesStillResolving() {
+        maxPendingShares = 100;
+        for (int i = 0; i < 40; i++) {
+            queue.Offer(CreateShare("id" + i, "Player" + i, LinkPriority.PUBLIC), 0);
+        }
+
+        HandOutAll();
+        int inFlight = handled.size();
+        assertTrue(inFlight > 0 && inFlight < 40);
+        assertEquals(inFlight, queue.GetInFlightCount());
+        assertEquals(40 - inFlight, queue.GetQueuedCount());
+
+        resolutions.get(0).complete(null);
+        HandOutAll();
+        assertEquals(inFlight + 1, handled.size());
+        assertEquals(inFlight, queue.GetInFlightCount());
+    }
+
+    private void Fill(String... ids) {
+        for (String id : ids) {
+            assertTrue(queue.Offer(CreateShare(id, "Player", LinkPriority.PUBLIC), 0));
+        }
+    }
+
+    private void HandOutAll() {
+        queue.Start(tasks::add, share -> {
+            handled.add(share);
+            CompletableFuture<Void> resolution = new CompletableFuture<>();
+            resolutions.add(resolution);
+            return resolution;
+        });
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    private static PendingShare CreateShare(String id, String sender, LinkPriority priority) {
+        return new PendingShare(LinkKind.SPOTIFY_TRACK, id, LinkItem.keyOf(LinkKind.SPOTIFY_TRACK, id), sender, priority,
+                LocalDateTime.now());
+    }
+}
@@ -0,0 +1,147 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.LinkPriority;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SpotifyRequestSchedulerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private MockWebServer server;
+    private HttpPipeline httpPipeline;
+    private SpotifyRequestScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        httpPipeline = new HttpPipeline(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (scheduler != null) {
+            scheduler.Shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void waitsForRetryAfterOnTooManyRequests() throws Exception {
+        scheduler = CreateScheduler(100, 10, 4);
+        scheduler.Start();
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setBody("track"));
+
+        long start = System.nanoTime();
+        String body = Submit("/v1/tracks", LinkPriority.PUBLIC).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals("track", body);
+        assertEquals(2, server.getRequestCount());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(950));
+    }
+
+    @Test
+    public void retriesServerErrors() throws Exception {
+        scheduler = CreateScheduler(100, 10, 4);
+        scheduler.Start();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse().setBody("track"));
+
+        assertEquals("track", Submit("/v1/tracks", LinkPriority.PUBLIC).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() throws Exception {
+        scheduler = CreateScheduler(100, 10, 4);
+        scheduler.Start();
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        try {
+            Submit("/v1/tracks", LinkPriority.PUBLIC).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpStatusException);
+            assertEquals(404, ((HttpStatusException) e.getCause()).getCode());
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void sendsMostUrgentRequestsFirst() throws Exception {
+        scheduler = CreateScheduler(100, 10, 1);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setBody("track"));
+        }
+
+        // Queued before Start(), so all three compete for the first slot
+        CompletableFuture<String> stranger = Submit("/public", LinkPriority.PUBLIC);
+        CompletableFuture<String> friend = Submit("/friends", LinkPriority.FRIENDS);
+        CompletableFuture<String> own = Submit("/own", LinkPriority.OWN);
+        scheduler.Start();
+        CompletableFuture.allOf(stranger, friend, own).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals("/own", server.takeRequest().getPath());
+        assertEquals("/friends", server.takeRequest().getPath());
+        assertEquals("/public", server.takeRequest().getPath());
+    }
+
+    @Test
+    public void spacesRequestsWithTokenBucket() throws Exception {
+        scheduler = CreateScheduler(10, 1, 4);
+        scheduler.Start();
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setBody("track"));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture.allOf(
+                Submit("/1", LinkPriority.PUBLIC),
+                Submit("/2", LinkPriority.PUBLIC),
+                Submit("/3", LinkPriority.PUBLIC),
+                Submit("/4", LinkPriority.PUBLIC)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // One request right away from the burst, then one every 100ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(280));
+    }
+
+    @Test
+    public void failsWithoutSendingWhenRequestCannotBeBuilt() throws Exception {
+        scheduler = CreateScheduler(100, 10, 4);
+        scheduler.Start();
+
+        CompletableFuture<String> future = scheduler.Submit(() -> null, response -> response.body().string(), LinkPriority.OWN);
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertEquals(0, server.getRequestCount());
+        }
+    }
+
+    private SpotifyRequestScheduler CreateScheduler(double permitsPerSecond, int burst, int maxInFlight) {
+        return new SpotifyRequestScheduler(httpPipeline, new ShareLinksMetrics(), permitsPerSecond, burst, maxInFlight, 10);
+    }
+
+    private CompletableFuture<String> Submit(String path, LinkPriority priority) {
+        Request request = new Request.Builder()
+                .url(server.url(path))
+                .build();
+        return scheduler.Submit(() -> request, response -> response.body().string(), priority);
+    }
+}
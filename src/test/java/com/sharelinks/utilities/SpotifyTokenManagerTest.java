@@ -0,0 +1,53 @@
+package com.sharelinks.utilities;
+
+import com.sharelinks.models.spotify.SpotifyAccessToken;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SpotifyTokenManagerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsTokenSavedBeforeTheStore() throws Exception {
+        SpotifyAccessToken token = new SpotifyAccessToken();
+        token.access_token = "access";
+        token.token_type = "Bearer";
+        token.expires_in = 3600;
+        token.refresh_token = "refresh";
+        token.creation_time = LocalDateTime.of(2020, 1, 1, 12, 0);
+        File file = WriteObject(token);
+
+        SpotifyAccessToken legacyToken = SpotifyTokenManager.ReadLegacyToken(file);
+        assertEquals("access", legacyToken.access_token);
+        assertEquals("refresh", legacyToken.refresh_token);
+        assertEquals(3600, legacyToken.expires_in);
+        assertEquals(token.creation_time, legacyToken.creation_time);
+    }
+
+    @Test
+    public void ignoresFilesWithoutALegacyToken() throws Exception {
+        // Older versions created an empty file before the user logged in
+        assertNull(SpotifyTokenManager.ReadLegacyToken(temporaryFolder.newFile()));
+        assertNull(SpotifyTokenManager.ReadLegacyToken(new File(temporaryFolder.getRoot(), "missing")));
+        assertNull(SpotifyTokenManager.ReadLegacyToken(WriteObject(new ArrayList<>())));
+    }
+
+    private File WriteObject(Object object) throws Exception {
+        File file = temporaryFolder.newFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(object);
+        }
+        return file;
+    }
+}